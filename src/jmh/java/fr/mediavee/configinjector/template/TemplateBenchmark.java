@@ -0,0 +1,73 @@
+package fr.mediavee.configinjector.template;
+
+import fr.mediavee.configinjector.resolver.VariableResolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the single-pass scanner with the regular expression it replaced, on a value without placeholder,
+ * the most common case in configuration files, and on values with one and several placeholders.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TemplateBenchmark {
+
+    private static final Pattern REGEX = Pattern.compile("\\$\\{([^}:]+)(?::([^}]*))?\\}");
+
+    @Param({
+        "a plain value without any placeholder",
+        "${DB_HOST:localhost}",
+        "jdbc:mysql://${DB_HOST:localhost}:${DB_PORT:3306}/${DB_NAME:mydb}?user=${DB_USER:root}&password=${DB_PASSWORD:}"
+    })
+    public String value;
+
+    private VariableResolver resolver;
+    private Template compiled;
+
+    @Setup
+    public void setUp() {
+        resolver = Map.of("DB_HOST", "db.internal", "DB_USER", "server")::get;
+        compiled = Template.parse(value);
+    }
+
+    @Benchmark
+    public String regex() {
+        Matcher matcher = REGEX.matcher(value);
+        StringBuilder result = new StringBuilder();
+        while (matcher.find()) {
+            String resolved = resolver.getVariable(matcher.group(1));
+            if (resolved == null) {
+                resolved = matcher.group(2) != null ? matcher.group(2) : "";
+            }
+            matcher.appendReplacement(result, Matcher.quoteReplacement(resolved));
+        }
+        return matcher.appendTail(result).toString();
+    }
+
+    @Benchmark
+    public String scanner() {
+        return Template.expand(value, null, resolver);
+    }
+
+    @Benchmark
+    public Template parse() {
+        return Template.parse(value);
+    }
+
+    @Benchmark
+    public String renderCompiled() {
+        return compiled.render(null, resolver);
+    }
+}
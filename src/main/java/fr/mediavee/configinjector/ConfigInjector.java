@@ -1,13 +1,23 @@
 package fr.mediavee.configinjector;
 
+import fr.mediavee.configinjector.backup.BackupStore;
+import fr.mediavee.configinjector.command.ConfigInjectorCommand;
+import fr.mediavee.configinjector.engine.InjectionBarrier;
+import fr.mediavee.configinjector.engine.InjectionEngine;
+import fr.mediavee.configinjector.engine.InjectionListener;
+import fr.mediavee.configinjector.engine.InjectionReport;
+import fr.mediavee.configinjector.engine.InjectionResult;
+import fr.mediavee.configinjector.engine.InjectionSettings;
 import fr.mediavee.configinjector.exception.MissingRequiredVariableException;
-import fr.mediavee.configinjector.processor.FileProcessor;
-import fr.mediavee.configinjector.processor.FileProcessorFactory;
-import fr.mediavee.configinjector.processor.AbstractFileProcessor.RequiredVariableValidator;
-import fr.mediavee.configinjector.resolver.impl.CompositeVariableResolver;
-import fr.mediavee.configinjector.resolver.impl.EnvironmentFileResolver;
-import fr.mediavee.configinjector.resolver.impl.SystemVariableResolver;
+import fr.mediavee.configinjector.plan.PlanCache;
+import fr.mediavee.configinjector.plan.ReplacementPlan;
 import fr.mediavee.configinjector.resolver.VariableResolver;
+import fr.mediavee.configinjector.template.CachingTemplateService;
+import fr.mediavee.configinjector.template.TemplateService;
+import fr.mediavee.configinjector.watch.ConfigWatcher;
+import org.bukkit.command.PluginCommand;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.ServicePriority;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import java.io.FileNotFoundException;
@@ -16,34 +26,140 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 
 public final class ConfigInjector extends JavaPlugin {
 
-    private final boolean stopOnMissingRequired;
-    private final boolean stopOnError;
+    private volatile InjectionSettings settings;
+    private volatile byte[] configContent;
+    private final PlanCache planCache = new PlanCache();
+    private final CachingTemplateService templateService = new CachingTemplateService(null, CachingTemplateService.DEFAULT_MAX_TEMPLATES);
+    private volatile List<String> backupIds = List.of();
+    private ConfigWatcher watcher;
+    private InjectionBarrier bootstrap;
 
     public ConfigInjector() {
         super();
 
         saveDefaultConfig();
+        configContent = readConfigFile();
+        loadSettings();
 
-        this.stopOnMissingRequired = getConfig().getBoolean("stop-on-missing-required", true);
-        this.stopOnError = getConfig().getBoolean("stop-on-error", false);
+        if (getConfig().getBoolean("async-bootstrap", false)) {
+            startBootstrap();
+            // The plugins constructed before this one run their onLoad next, wait for their files now
+            awaitBootstrap(dataFolders(getServer().getPluginManager().getPlugins(), this, true));
+            return;
+        }
 
         try {
-            processConfigReplacements();
-        } catch (MissingRequiredVariableException e) {
-            handleError("Missing required variables: " + e.getMissingVariables(), e, stopOnMissingRequired);
-        } catch (FileNotFoundException e) {
-            handleError("Configuration file not found", e, stopOnError);
-        } catch (IllegalArgumentException e) {
-            handleError("Invalid configuration format", e, stopOnError);
-        } catch (IOException e) {
-            handleError("I/O error during configuration processing", e, stopOnError);
+            processConfigReplacements(null);
         } catch (Exception e) {
-            handleError("Unexpected error during configuration processing", e, stopOnError);
+            handleInjectionFailure(e);
+        }
+    }
+
+    /**
+     * Runs the boot injection on a background thread so the other plugins keep loading meanwhile.
+     * Bukkit constructs every plugin, then calls their {@code onLoad} in order, then their {@code onEnable}: the files
+     * under the folders of the plugins constructed earlier are waited for in the constructor, those of the plugins
+     * after this one in {@link #onLoad()}, and everything else in {@link #onEnable()}.
+     */
+    private void startBootstrap() {
+        InjectionBarrier barrier = new InjectionBarrier();
+        Thread thread = new Thread(() -> {
+            try {
+                processConfigReplacements(barrier);
+                barrier.complete(null);
+            } catch (Throwable t) {
+                barrier.complete(t);
+            }
+        }, "ConfigInjector-bootstrap");
+        thread.setDaemon(true);
+        thread.start();
+        bootstrap = barrier;
+    }
+
+    /**
+     * Waits for the background boot injection, then reports its failure if any.
+     *
+     * @param directories the directories to wait for, null to wait for the whole injection
+     */
+    private void awaitBootstrap(List<Path> directories) {
+        long start = System.nanoTime();
+        try {
+            if (directories == null) {
+                bootstrap.awaitCompletion();
+            } else {
+                bootstrap.awaitDirectories(directories);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            getLogger().warning("Interrupted while waiting for the configuration injection");
+            return;
+        }
+
+        long waitedMillis = (System.nanoTime() - start) / 1_000_000;
+        if (waitedMillis > 0) {
+            getLogger().info("Waited " + waitedMillis + " ms for the configuration injection");
+        }
+
+        Throwable failure = bootstrap.getFailure();
+        if (failure != null) {
+            bootstrap = null;
+            if (failure instanceof Exception) {
+                handleInjectionFailure((Exception) failure);
+            } else {
+                handleError("Unexpected error during configuration processing", new RuntimeException(failure), settings.isStopOnError());
+            }
+        }
+    }
+
+    private void handleInjectionFailure(Exception e) {
+        if (e instanceof MissingRequiredVariableException) {
+            handleError("Missing required variables: " + ((MissingRequiredVariableException) e).getMissingVariables(), e, settings.isStopOnMissingRequired());
+        } else if (e instanceof FileNotFoundException) {
+            handleError("Configuration file not found", e, settings.isStopOnError());
+        } else if (e instanceof IllegalArgumentException) {
+            handleError("Invalid configuration format", e, settings.isStopOnError());
+        } else if (e instanceof IOException) {
+            handleError("I/O error during configuration processing", e, settings.isStopOnError());
+        } else {
+            handleError("Unexpected error during configuration processing", e, settings.isStopOnError());
+        }
+    }
+
+    private void loadSettings() {
+        this.settings = InjectionSettings.fromMap(getConfig().getValues(false));
+        refreshTemplateVariables();
+    }
+
+    /**
+     * Gives the template service a fresh snapshot of the system environment and the env file.
+     */
+    private void refreshTemplateVariables() {
+        Path envFile = getServer().getWorldContainer().toPath().resolve(settings.getEnvFile());
+        templateService.setResolver(settings.createResolver(envFile));
+    }
+
+    /**
+     * Re-reads config.yml from disk. Safe to call from an async task.
+     */
+    public void reloadSettings() {
+        // Read before reloading: if the file changes in between, the plan is keyed by the older
+        // content and simply compiled again on the next reload
+        configContent = readConfigFile();
+        reloadConfig();
+        loadSettings();
+    }
+
+    private byte[] readConfigFile() {
+        try {
+            return Files.readAllBytes(getDataFolder().toPath().resolve("config.yml"));
+        } catch (IOException e) {
+            getLogger().log(Level.WARNING, "Failed to read config.yml, the replacement plan will not be cached", e);
+            return null;
         }
     }
 
@@ -55,64 +171,237 @@ public final class ConfigInjector extends JavaPlugin {
         }
     }
 
-    private void processConfigReplacements() throws IOException {
-        Map<String, Object> config = getConfig().getValues(false);
-        List<Map<String, Object>> replacements = (List<Map<String, Object>>) config.get("replacements");
-        
-        if (replacements == null) {
+    /**
+     * Plugins are loaded in the order of the plugin list, so the ones after this plugin have not run
+     * their {@code onLoad} yet: wait for the files under their folders before they do.
+     */
+    @Override
+    public void onLoad() {
+        if (bootstrap == null) {
             return;
         }
+        awaitBootstrap(dataFolders(getServer().getPluginManager().getPlugins(), this, false));
+    }
 
-        String envFile = getConfig().getString("env-file", ".env");
-        Path envFilePath = getServer().getWorldContainer().toPath().resolve(envFile);
-        VariableResolver resolver = new CompositeVariableResolver(
-            new SystemVariableResolver(),
-            new EnvironmentFileResolver(envFilePath)
-        );
+    /**
+     * @param plugins the plugins in load order, which only lists the plugins constructed so far
+     * @param before true for the folders of the plugins before {@code self}, all of them if it is not listed yet,
+     *               false for those after it
+     * @return the normalized absolute data folders of the plugins
+     */
+    static List<Path> dataFolders(Plugin[] plugins, Plugin self, boolean before) {
+        List<Path> directories = new ArrayList<>();
+        boolean after = false;
+        for (Plugin plugin : plugins) {
+            if (plugin == self) {
+                after = true;
+            } else if (after != before) {
+                directories.add(plugin.getDataFolder().toPath().toAbsolutePath().normalize());
+            }
+        }
+        return directories;
+    }
+
+    @Override
+    public void onEnable() {
+        if (bootstrap != null) {
+            awaitBootstrap(null);
+            bootstrap = null;
+        }
 
-        boolean stopOnMissingRequired = getConfig().getBoolean("stop-on-missing-required", true);
-        List<String> missingVariables = new ArrayList<>();
-        RequiredVariableValidator validator = new RequiredVariableValidator(stopOnMissingRequired, missingVariables);
+        PluginCommand command = getCommand("configinjector");
+        if (command != null) {
+            ConfigInjectorCommand executor = new ConfigInjectorCommand(this);
+            command.setExecutor(executor);
+            command.setTabCompleter(executor);
+        }
 
-        int processedFiles = 0;
-        int modifiedFiles = 0;
+        getServer().getServicesManager().register(TemplateService.class, templateService, this, ServicePriority.Normal);
 
-        for (Map<String, Object> replacement : replacements) {
-            String filePath = (String) replacement.get("file");
-            List<Map<String, Object>> changes = (List<Map<String, Object>>) replacement.get("changes");
-            
-            if (processFileReplacements(filePath, changes, validator, resolver)) {
-                modifiedFiles++;
+        if (getConfig().getBoolean("watch", false)) {
+            startWatcher();
+        }
+    }
+
+    @Override
+    public void onDisable() {
+        getServer().getServicesManager().unregisterAll(this);
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } catch (IOException e) {
+                getLogger().log(Level.WARNING, "Failed to stop file watcher", e);
             }
-            processedFiles++;
+            watcher = null;
         }
+    }
+
+    private void startWatcher() {
+        Path configFile = getDataFolder().toPath().resolve("config.yml");
+        Path envFile = getServer().getWorldContainer().toPath().resolve(settings.getEnvFile());
+        long debounceMillis = getConfig().getLong("watch-debounce-ms", 500);
 
-        if (!missingVariables.isEmpty()) {
-            throw new MissingRequiredVariableException(missingVariables);
+        try {
+            watcher = new ConfigWatcher(List.of(configFile, envFile), debounceMillis, changed -> onWatchedFilesChanged(changed, configFile));
+            watcher.start();
+            getLogger().info("Watching " + configFile + " and " + envFile + " for changes");
+        } catch (IOException e) {
+            getLogger().log(Level.WARNING, "Failed to start file watcher", e);
+        }
+    }
+
+    /**
+     * Called on the watcher thread. Files whose resolved values did not change are skipped
+     * through the state manifest, so a secret rotation only rewrites the files using it.
+     */
+    private void onWatchedFilesChanged(Set<Path> changed, Path configFile) {
+        if (changed.contains(configFile.toAbsolutePath().normalize())) {
+            getLogger().info("Configuration changed, reloading it");
+            reloadSettings();
+        } else {
+            refreshTemplateVariables();
         }
 
-        getLogger().info(String.format("Processed %d files, modified %d files", processedFiles, modifiedFiles));
+        try {
+            InjectionReport report = runIncrementalInjection();
+            if (report != null) {
+                getLogger().info("Re-injected after change of " + changed + ": " + report.toSummary());
+            }
+        } catch (MissingRequiredVariableException e) {
+            getLogger().log(Level.SEVERE, "Missing required variables: " + e.getMissingVariables(), e);
+        } catch (Exception e) {
+            getLogger().log(Level.SEVERE, "Failed to re-inject configuration after change of " + changed, e);
+        }
     }
-    
 
-    private boolean processFileReplacements(String filePath, List<Map<String, Object>> changes) throws IOException {
-        return processFileReplacements(filePath, changes, null);
+    private void processConfigReplacements(InjectionListener listener) throws IOException {
+        boolean dryRun = settings.isDryRun();
+        InjectionReport report = runInjection(dryRun, null, false, listener);
+
+        if (report == null) {
+            return;
+        }
+
+        if (dryRun) {
+            report.toPlanLines().forEach(getLogger()::info);
+        } else {
+            getLogger().info(report.toSummary());
+        }
+
+        writeReport(report);
     }
-    
-    private boolean processFileReplacements(String filePath, List<Map<String, Object>> changes, RequiredVariableValidator validator) throws IOException {
-        return processFileReplacements(filePath, changes, validator, new SystemVariableResolver());
+
+    /**
+     * Writes the JSON report of a run to the data folder, unless disabled in the configuration.
+     */
+    public void writeReport(InjectionReport report) {
+        if (!getConfig().getBoolean("write-report", true)) {
+            return;
+        }
+        try {
+            report.writeJson(getDataFolder().toPath().resolve("report.json"));
+        } catch (IOException e) {
+            getLogger().log(Level.WARNING, "Failed to write injection report", e);
+        }
     }
-    
-    private boolean processFileReplacements(String filePath, List<Map<String, Object>> changes, RequiredVariableValidator validator, VariableResolver resolver) throws IOException {
-        Path serverRoot = getServer().getWorldContainer().toPath();
-        Path fullPath = serverRoot.resolve(filePath);
-        
-        if (!Files.exists(fullPath)) {
-            throw new FileNotFoundException("Configuration file not found: " + fullPath);
+
+    /**
+     * @return the service other plugins also get from the services manager
+     */
+    public TemplateService getTemplateService() {
+        return templateService;
+    }
+
+    /**
+     * @return the store of the previous content of overwritten files, or null if backups are disabled
+     * @throws IllegalArgumentException if the backup settings are invalid
+     */
+    public BackupStore getBackupStore() {
+        return settings.createBackupStore(getDataFolder().toPath());
+    }
+
+    /**
+     * @return the ids of the stored backups as of the last run or rollback, oldest first, without reading the disk
+     */
+    public List<String> getBackupIds() {
+        return backupIds;
+    }
+
+    /**
+     * Lists the stored backups again for {@link #getBackupIds()}. Reads the disk, so not to be called on the main thread.
+     */
+    public void refreshBackupIds() {
+        try {
+            BackupStore store = getBackupStore();
+            backupIds = store != null ? List.copyOf(store.list()) : List.of();
+        } catch (IOException | IllegalArgumentException e) {
+            getLogger().log(Level.WARNING, "Failed to list backups", e);
         }
+    }
+
+    /**
+     * Runs the replacements of the current configuration.
+     *
+     * @param dryRun if true, nothing is written and the report describes the changes instead
+     * @return the report of the run, or null if no replacements are configured
+     */
+    public InjectionReport runInjection(boolean dryRun) throws IOException {
+        return runInjection(dryRun, null);
+    }
 
-        FileProcessor processor = FileProcessorFactory.getProcessor(filePath);
+    /**
+     * Runs the replacements of the current configuration, optionally for a single file.
+     *
+     * @param dryRun if true, nothing is written and the report describes the changes instead
+     * @param onlyFile if not null, only the replacements targeting this file, relative to the server root, are run
+     * @return the report of the run, or null if no replacements are configured
+     */
+    public InjectionReport runInjection(boolean dryRun, String onlyFile) throws IOException {
+        return runInjection(dryRun, onlyFile, false, null);
+    }
+
+    /**
+     * Runs the replacements of the current configuration for the files depending on a variable whose value changed
+     * since the last run. Every file is processed when the replacements changed since.
+     *
+     * @return the report of the run, or null if no replacements are configured
+     */
+    public InjectionReport runIncrementalInjection() throws IOException {
+        return runInjection(false, null, true, null);
+    }
 
-        return processor.processFile(fullPath, changes, validator, resolver);
+    private InjectionReport runInjection(boolean dryRun, String onlyFile, boolean incremental, InjectionListener listener) throws IOException {
+        InjectionSettings settings = this.settings;
+        Object replacements = settings.getReplacements();
+        if (replacements == null) {
+            return null;
+        }
+
+        Path serverRoot = getServer().getWorldContainer().toPath();
+        byte[] content = configContent;
+        ReplacementPlan plan = content != null
+            ? planCache.get(content, () -> ReplacementPlan.compile(replacements, serverRoot))
+            : ReplacementPlan.compile(replacements, serverRoot);
+
+        long resolverStart = System.nanoTime();
+        VariableResolver resolver = settings.createResolver(serverRoot.resolve(settings.getEnvFile()));
+        long resolverLoadNanos = System.nanoTime() - resolverStart;
+
+        InjectionEngine engine = settings.createEngine(serverRoot, resolver, dryRun, getDataFolder().toPath());
+        engine.setListener(listener);
+        engine.setIncremental(incremental);
+        if (onlyFile != null) {
+            engine.setTargetFilter(serverRoot.resolve(onlyFile));
+        }
+
+        InjectionResult result;
+        try {
+            result = engine.run(plan);
+        } finally {
+            if (!dryRun) {
+                refreshBackupIds();
+            }
+        }
+        return new InjectionReport(result, resolverLoadNanos);
     }
 }
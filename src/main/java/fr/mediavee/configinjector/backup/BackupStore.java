@@ -0,0 +1,397 @@
+package fr.mediavee.configinjector.backup;
+
+import fr.mediavee.configinjector.engine.DurableCommit;
+import fr.mediavee.configinjector.engine.FileLocks;
+import fr.mediavee.configinjector.processor.ContentWriter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the previous content of every file the injector overwrites, so a run can be rolled back.
+ * Contents are stored once as gzip blobs named by their SHA-256 under {@code objects/}, however many
+ * runs and files share them. Each run that overwrote files gets an index under {@code runs/},
+ * named by its id and mapping every overwritten file to the blob of its previous content, or to {@value #ABSENT}
+ * for the files the run created, which a rollback deletes.
+ * Retention is bounded by a number of runs and by the total size of the blobs they reference;
+ * blobs no longer referenced by any index are deleted.
+ */
+public class BackupStore {
+
+    /**
+     * The value of a file in a run index when the file did not exist before the run.
+     */
+    public static final String ABSENT = "absent";
+    private static final Logger LOGGER = Logger.getLogger(BackupStore.class.getName());
+    private static final DateTimeFormatter ID_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+    private static final String INDEX_SUFFIX = ".properties";
+    private static final String BLOB_SUFFIX = ".gz";
+    // Blobs written by a run whose index is not saved yet, possibly in another process, are not referenced yet
+    private static final long SWEEP_GRACE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    // Ids handed out to runs that have not finished yet, across every store of this JVM; saved ones exist on disk
+    private static final Set<String> ISSUED_IDS = new HashSet<>();
+
+    private final Path directory;
+    private final int maxRuns;
+    private final long maxBytes;
+
+    /**
+     * @param directory the root of the store
+     * @param maxRuns the number of run indexes kept, oldest first removed
+     * @param maxBytes the total size of the blobs referenced by the kept runs; the latest run is always kept
+     */
+    public BackupStore(Path directory, int maxRuns, long maxBytes) {
+        if (maxRuns < 1) {
+            throw new IllegalArgumentException("At least one backup must be kept, got " + maxRuns);
+        }
+        this.directory = directory;
+        this.maxRuns = maxRuns;
+        this.maxBytes = maxBytes;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Starts backing up the files overwritten by a run.
+     */
+    public Session begin() {
+        return new Session(newId());
+    }
+
+    /**
+     * @return the ids of the stored runs, oldest first
+     */
+    public List<String> list() throws IOException {
+        Path runs = directory.resolve("runs");
+        if (!Files.isDirectory(runs)) {
+            return new ArrayList<>();
+        }
+        List<String> ids = new ArrayList<>();
+        try (Stream<Path> files = Files.list(runs)) {
+            files.map(file -> file.getFileName().toString())
+                .filter(name -> name.endsWith(INDEX_SUFFIX))
+                .map(name -> name.substring(0, name.length() - INDEX_SUFFIX.length()))
+                .forEach(ids::add);
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    /**
+     * @return the files overwritten by a run, mapped to the hash of the content they had before it,
+     * or to {@link #ABSENT} if the run created them
+     * @throws NoSuchFileException if no run has this id
+     */
+    public Map<Path, String> read(String id) throws IOException {
+        Path index = indexPath(id);
+        Properties properties = new Properties();
+        try (InputStream input = Files.newInputStream(index)) {
+            properties.load(input);
+        }
+
+        Map<Path, String> files = new LinkedHashMap<>();
+        for (String file : new TreeSet<>(properties.stringPropertyNames())) {
+            files.put(Path.of(file), properties.getProperty(file));
+        }
+        return files;
+    }
+
+    /**
+     * Restores every file overwritten by a run to the content it had before that run, and deletes the files it created.
+     * The restored files are written through a {@link DurableCommit}, and their current content
+     * is itself backed up, so a rollback can be rolled back.
+     *
+     * @return the restored files
+     * @throws NoSuchFileException if no run has this id
+     */
+    public List<Path> rollback(String id) throws IOException {
+        Map<Path, String> files = read(id);
+        Session session = begin();
+        DurableCommit commit = new DurableCommit();
+        ContentWriter writer = session.wrap(commit);
+
+        try {
+            for (Map.Entry<Path, String> file : files.entrySet()) {
+                Path target = file.getKey();
+                if (ABSENT.equals(file.getValue())) {
+                    FileLocks.withLock(target, () -> {
+                        if (Files.exists(target)) {
+                            session.backup(target, Files.readAllBytes(target));
+                            Files.delete(target);
+                        }
+                        return null;
+                    });
+                    continue;
+                }
+
+                byte[] content = readBlob(file.getValue());
+                FileLocks.withLock(target, () -> {
+                    Files.createDirectories(target.toAbsolutePath().getParent());
+                    byte[] current = Files.exists(target) ? Files.readAllBytes(target) : null;
+                    if (!Arrays.equals(current, content)) {
+                        writer.write(target, current, content);
+                    }
+                    return null;
+                });
+            }
+        } finally {
+            commit.commit();
+            session.finish();
+        }
+        return new ArrayList<>(files.keySet());
+    }
+
+    /**
+     * Removes the runs beyond the retention limits, then the blobs none of the remaining runs reference.
+     */
+    public synchronized void collectGarbage() throws IOException {
+        List<String> ids = list();
+        Set<String> kept = new HashSet<>();
+        Set<String> referenced = new HashSet<>();
+        long bytes = 0;
+        boolean full = false;
+
+        // Newest first, so the kept runs are always the most recent ones
+        for (int i = ids.size() - 1; i >= 0; i--) {
+            String id = ids.get(i);
+            boolean keep = !full && kept.size() < maxRuns;
+            if (keep) {
+                Set<String> hashes = new HashSet<>(read(id).values());
+                hashes.remove(ABSENT);
+                long added = 0;
+                for (String hash : hashes) {
+                    if (!referenced.contains(hash)) {
+                        added += size(blobPath(hash));
+                    }
+                }
+                keep = kept.isEmpty() || bytes + added <= maxBytes;
+                if (keep) {
+                    kept.add(id);
+                    referenced.addAll(hashes);
+                    bytes += added;
+                } else {
+                    full = true;
+                }
+            }
+            if (!keep) {
+                Files.deleteIfExists(indexPath(id));
+            }
+        }
+
+        Path objects = directory.resolve("objects");
+        if (!Files.isDirectory(objects)) {
+            return;
+        }
+        long sweepBefore = System.currentTimeMillis() - SWEEP_GRACE_MILLIS;
+        try (Stream<Path> files = Files.walk(objects)) {
+            for (Path blob : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                String name = blob.getFileName().toString();
+                String hash = name.endsWith(BLOB_SUFFIX) ? name.substring(0, name.length() - BLOB_SUFFIX.length()) : name;
+                if (!referenced.contains(hash) && Files.getLastModifiedTime(blob).toMillis() < sweepBefore) {
+                    Files.deleteIfExists(blob);
+                }
+            }
+        }
+    }
+
+    byte[] readBlob(String hash) throws IOException {
+        try (InputStream input = new GZIPInputStream(Files.newInputStream(blobPath(hash)))) {
+            return input.readAllBytes();
+        }
+    }
+
+    Path blobPath(String hash) {
+        return directory.resolve("objects").resolve(hash.substring(0, 2)).resolve(hash + BLOB_SUFFIX);
+    }
+
+    private Path indexPath(String id) {
+        if (id.isEmpty() || id.contains("/") || id.contains("\\") || id.startsWith(".")) {
+            throw new IllegalArgumentException("Invalid backup id: " + id);
+        }
+        return directory.resolve("runs").resolve(id + INDEX_SUFFIX);
+    }
+
+    private String newId() {
+        String base = LocalDateTime.now().format(ID_FORMAT);
+        synchronized (ISSUED_IDS) {
+            String id = base;
+            for (int i = 2; ISSUED_IDS.contains(id) || Files.exists(indexPath(id)); i++) {
+                id = base + "-" + i;
+            }
+            ISSUED_IDS.add(id);
+            return id;
+        }
+    }
+
+    private void store(String hash, byte[] content) throws IOException {
+        Path blob = blobPath(hash);
+        if (Files.exists(blob)) {
+            // Protects the blob from a concurrent sweep until the index referencing it is saved
+            Files.setLastModifiedTime(blob, FileTime.fromMillis(System.currentTimeMillis()));
+            return;
+        }
+
+        Files.createDirectories(blob.getParent());
+        Path temp = Files.createTempFile(blob.getParent(), hash, ".tmp");
+        try {
+            try (OutputStream output = new GZIPOutputStream(Files.newOutputStream(temp))) {
+                output.write(content);
+            }
+            Files.move(temp, blob, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static long size(Path file) throws IOException {
+        try {
+            return Files.size(file);
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+    }
+
+    static String hash(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * The backups of one run. Files are recorded as they are overwritten and the index is saved by {@link #finish()}.
+     */
+    public class Session {
+
+        private final String id;
+        private final Map<String, String> files = Collections.synchronizedMap(new LinkedHashMap<>());
+
+        private Session(String id) {
+            this.id = id;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * Stores the content a file has before being overwritten. Only the first content recorded for a file is kept.
+         *
+         * @param previousContent null if the file did not exist, so a rollback deletes it
+         */
+        public void backup(Path file, byte[] previousContent) throws IOException {
+            String key = file.toAbsolutePath().normalize().toString();
+            if (files.containsKey(key)) {
+                return;
+            }
+            if (previousContent == null) {
+                files.putIfAbsent(key, ABSENT);
+                return;
+            }
+            String hash = hash(previousContent);
+            store(hash, previousContent);
+            files.putIfAbsent(key, hash);
+        }
+
+        /**
+         * @return a writer backing up the previous content of a file before handing it to the given writer, or once
+         * it is renamed into place for a {@link DurableCommit}, so a file left as another process changed it is not
+         * recorded
+         */
+        public ContentWriter wrap(ContentWriter writer) {
+            if (writer instanceof DurableCommit) {
+                DurableCommit commit = (DurableCommit) writer;
+                return (file, previousContent, content) -> {
+                    commit.write(file, previousContent, content);
+                    commit.whenCommitted(file, () -> backupQuietly(file, previousContent));
+                };
+            }
+            return (file, previousContent, content) -> {
+                backupQuietly(file, previousContent);
+                writer.write(file, previousContent, content);
+            };
+        }
+
+        private void backupQuietly(Path file, byte[] previousContent) {
+            try {
+                backup(file, previousContent);
+            } catch (IOException e) {
+                // A failed backup must not prevent the server from getting its configuration
+                LOGGER.log(Level.WARNING, "Failed to back up " + file + " before overwriting it", e);
+            }
+        }
+
+        /**
+         * Saves the index of the run if it backed up any file, then applies the retention limits.
+         * The id is released either way, as a saved index keeps it unique.
+         *
+         * @return true if an index was saved
+         */
+        public boolean finish() throws IOException {
+            try {
+                return saveIndex();
+            } finally {
+                synchronized (ISSUED_IDS) {
+                    ISSUED_IDS.remove(id);
+                }
+            }
+        }
+
+        private boolean saveIndex() throws IOException {
+            Map<String, String> snapshot;
+            synchronized (files) {
+                snapshot = new LinkedHashMap<>(files);
+            }
+            if (snapshot.isEmpty()) {
+                return false;
+            }
+
+            Properties properties = new Properties();
+            properties.putAll(snapshot);
+            Path index = indexPath(id);
+            Files.createDirectories(index.getParent());
+            Path temp = Files.createTempFile(index.getParent(), id, ".tmp");
+            try {
+                try (OutputStream output = Files.newOutputStream(temp)) {
+                    properties.store(output, "Previous content of the files overwritten by run " + id);
+                }
+                Files.move(temp, index, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+
+            collectGarbage();
+            return true;
+        }
+    }
+}
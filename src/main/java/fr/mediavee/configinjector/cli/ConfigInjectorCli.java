@@ -0,0 +1,415 @@
+package fr.mediavee.configinjector.cli;
+
+import fr.mediavee.configinjector.backup.BackupStore;
+import fr.mediavee.configinjector.engine.GlobExpander;
+import fr.mediavee.configinjector.engine.InjectionEngine;
+import fr.mediavee.configinjector.engine.InjectionReport;
+import fr.mediavee.configinjector.engine.InjectionSettings;
+import fr.mediavee.configinjector.exception.MissingRequiredVariableException;
+import fr.mediavee.configinjector.plan.PlannedChange;
+import fr.mediavee.configinjector.plan.PlannedReplacement;
+import fr.mediavee.configinjector.plan.ReplacementPlan;
+import fr.mediavee.configinjector.processor.AbstractFileProcessor.RequiredVariableValidator;
+import fr.mediavee.configinjector.processor.FileProcessor;
+import fr.mediavee.configinjector.processor.FileProcessorFactory;
+import fr.mediavee.configinjector.processor.ProcessingContext;
+import fr.mediavee.configinjector.processor.StructuredFileProcessor;
+import fr.mediavee.configinjector.resolver.VariableNamespaces;
+import fr.mediavee.configinjector.resolver.VariableResolver;
+import fr.mediavee.configinjector.resolver.impl.CachingVariableResolver;
+import fr.mediavee.configinjector.resolver.impl.CompositeVariableResolver;
+import fr.mediavee.configinjector.resolver.impl.EnvironmentFileResolver;
+import fr.mediavee.configinjector.resolver.impl.ExpandingVariableResolver;
+import fr.mediavee.configinjector.resolver.impl.NamespacedVariableResolver;
+import fr.mediavee.configinjector.resolver.impl.SystemPropertyResolver;
+import fr.mediavee.configinjector.resolver.impl.SystemVariableResolver;
+import fr.mediavee.configinjector.template.Condition;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the injection outside of the server, for instance from a container entrypoint before the JVM of the server starts.
+ * It reads the same config.yml as the plugin and shares its state file, so the plugin then skips the files already injected.
+ *
+ * <pre>
+ * java -jar ConfigInjector.jar [--root DIR]... [--roots-file FILE] [--config FILE] [--env-file FILE]
+ *                              [--parallelism N|auto] [--dry-run [--show-values]] [--filter FILE] [--rollback ID]
+ * </pre>
+ *
+ * With several roots, every root is injected in the same JVM: roots are spread over a worker pool,
+ * and the system environment and the shared env file are only looked up once per variable for all of them.
+ * Each root's own env file overlays the shared one. With a single root, {@code --parallelism} sets the number
+ * of files of the root processed concurrently instead, in place of {@code parallelism} in config.yml.
+ *
+ * With {@code --filter}, the content of the given target is read from stdin and written to stdout with its
+ * changes applied, nothing is read or written on disk except the configuration and the env files.
+ *
+ * With {@code --rollback}, the files overwritten by the given run of the root are restored from its backups
+ * instead of being injected.
+ *
+ * <p>Exit codes: 0 on success, or on a failure tolerated by {@code stop-on-error: false};
+ * 1 when the failure would have stopped a server; 2 on invalid arguments.</p>
+ */
+public final class ConfigInjectorCli {
+
+    static final int EXIT_OK = 0;
+    static final int EXIT_FAILURE = 1;
+    static final int EXIT_USAGE = 2;
+
+    private static final String USAGE = "Usage: java -jar ConfigInjector.jar [--root DIR]... [--roots-file FILE] [--config FILE]"
+        + " [--env-file FILE] [--parallelism N|auto] [--dry-run [--show-values]] [--filter FILE] [--rollback ID]";
+
+    private final PrintStream out;
+    private final PrintStream err;
+    private final List<Path> roots = new ArrayList<>();
+    private Path configFile;
+    private Path envFile;
+    private Integer parallelism;
+    private boolean dryRun;
+    private boolean showValues;
+    private String filterTarget;
+    private String rollbackId;
+
+    private VariableResolver systemResolver;
+    private VariableResolver sharedEnvResolver;
+
+    private ConfigInjectorCli(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.in, System.out, System.err));
+    }
+
+    /**
+     * @return the exit code
+     */
+    static int run(String[] args, InputStream in, PrintStream out, PrintStream err) {
+        ConfigInjectorCli cli = new ConfigInjectorCli(out, err);
+        try {
+            if (!cli.parseArguments(args)) {
+                err.println(USAGE);
+                return EXIT_USAGE;
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return EXIT_USAGE;
+        }
+
+        cli.systemResolver = new CachingVariableResolver(new SystemVariableResolver());
+        if (cli.envFile != null) {
+            cli.sharedEnvResolver = new CachingVariableResolver(new EnvironmentFileResolver(cli.envFile));
+        }
+
+        if (cli.filterTarget != null) {
+            return cli.filter(cli.roots.get(0), in);
+        }
+        if (cli.rollbackId != null) {
+            return cli.rollback(cli.roots.get(0));
+        }
+        if (cli.roots.size() == 1) {
+            return cli.injectRoot(cli.roots.get(0), "");
+        }
+        return cli.injectFleet();
+    }
+
+    private boolean parseArguments(String[] args) throws IOException {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--dry-run")) {
+                dryRun = true;
+                continue;
+            }
+            if (arg.equals("--show-values")) {
+                showValues = true;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                return false;
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "--root":
+                    roots.add(Path.of(value));
+                    break;
+                case "--roots-file":
+                    for (String line : Files.readAllLines(Path.of(value))) {
+                        if (!line.isBlank() && !line.trim().startsWith("#")) {
+                            roots.add(Path.of(line.trim()));
+                        }
+                    }
+                    break;
+                case "--config":
+                    configFile = Path.of(value);
+                    break;
+                case "--env-file":
+                    envFile = Path.of(value);
+                    break;
+                case "--parallelism":
+                    parallelism = InjectionEngine.parseParallelism(value);
+                    break;
+                case "--filter":
+                    filterTarget = value;
+                    break;
+                case "--rollback":
+                    rollbackId = value;
+                    break;
+                default:
+                    return false;
+            }
+        }
+
+        if (roots.isEmpty()) {
+            roots.add(Path.of("."));
+        }
+        roots.replaceAll(root -> root.toAbsolutePath().normalize());
+        if (filterTarget != null && rollbackId != null) {
+            return false;
+        }
+        return (filterTarget == null && rollbackId == null) || roots.size() == 1;
+    }
+
+    private Path configFile(Path root) {
+        return configFile != null ? configFile : root.resolve("plugins").resolve("ConfigInjector").resolve("config.yml");
+    }
+
+    private Path dataFolder(Path root) {
+        if (configFile != null && roots.size() > 1) {
+            // A shared configuration must not share the state of the roots
+            return root.resolve("plugins").resolve("ConfigInjector");
+        }
+        return configFile(root).toAbsolutePath().getParent();
+    }
+
+    private InjectionSettings loadSettings(Path root) throws IOException {
+        try (InputStream input = Files.newInputStream(configFile(root))) {
+            Map<String, Object> config = new Yaml().load(input);
+            return InjectionSettings.fromMap(config != null ? config : Map.of());
+        }
+    }
+
+    /**
+     * System environment first, then the env file of the root, then the shared env file.
+     */
+    private VariableResolver createResolver(Path root, InjectionSettings settings) {
+        List<VariableResolver> envFiles = new ArrayList<>(2);
+        envFiles.add(new EnvironmentFileResolver(root.resolve(settings.getEnvFile())));
+        if (sharedEnvResolver != null) {
+            envFiles.add(sharedEnvResolver);
+        }
+        List<VariableResolver> resolvers = new ArrayList<>(3);
+        resolvers.add(systemResolver);
+        resolvers.addAll(envFiles);
+        return new NamespacedVariableResolver(new CompositeVariableResolver(resolvers), Map.of(
+            VariableNamespaces.ENV, systemResolver,
+            VariableNamespaces.DOTENV, envFiles.size() == 1 ? envFiles.get(0) : new CompositeVariableResolver(envFiles),
+            VariableNamespaces.SYSTEM_PROPERTIES, new SystemPropertyResolver()
+        ));
+    }
+
+    private int injectFleet() {
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism != null ? parallelism : Runtime.getRuntime().availableProcessors(), roots.size()));
+        try {
+            List<Future<Integer>> futures = new ArrayList<>(roots.size());
+            for (Path root : roots) {
+                futures.add(executor.submit(() -> injectRoot(root, root + ": ")));
+            }
+
+            int exitCode = EXIT_OK;
+            int failed = 0;
+            for (int i = 0; i < futures.size(); i++) {
+                int rootExitCode;
+                try {
+                    rootExitCode = futures.get(i).get();
+                } catch (ExecutionException e) {
+                    print(roots.get(i) + ": unexpected error: " + e.getCause());
+                    rootExitCode = EXIT_FAILURE;
+                }
+                if (rootExitCode != EXIT_OK) {
+                    failed++;
+                }
+                exitCode = Math.max(exitCode, rootExitCode);
+            }
+
+            print(String.format("Injected %d roots, %d failed, in %d ms", roots.size(), failed, (System.nanoTime() - start) / 1_000_000));
+            return exitCode;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            print("Interrupted");
+            return EXIT_FAILURE;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @param prefix prepended to every message, to tell roots apart
+     * @return the exit code of this root
+     */
+    private int injectRoot(Path root, String prefix) {
+        InjectionSettings settings;
+        try {
+            settings = loadSettings(root);
+        } catch (IOException | RuntimeException e) {
+            print(prefix + "Failed to read " + configFile(root) + ": " + e.getMessage());
+            return EXIT_FAILURE;
+        }
+
+        try {
+            inject(root, settings, prefix);
+            return EXIT_OK;
+        } catch (MissingRequiredVariableException e) {
+            print(prefix + "Missing required variables: " + String.join(", ", e.getMissingVariables()));
+            return settings.isStopOnMissingRequired() ? EXIT_FAILURE : EXIT_OK;
+        } catch (IOException | RuntimeException e) {
+            print(prefix + "Configuration processing failed: " + e);
+            return settings.isStopOnError() ? EXIT_FAILURE : EXIT_OK;
+        }
+    }
+
+    private void inject(Path root, InjectionSettings settings, String prefix) throws IOException {
+        if (settings.getReplacements() == null) {
+            print(prefix + "No replacements configured");
+            return;
+        }
+        ReplacementPlan plan = ReplacementPlan.compile(settings.getReplacements(), root);
+
+        long resolverStart = System.nanoTime();
+        VariableResolver resolver = createResolver(root, settings);
+        long resolverLoadNanos = System.nanoTime() - resolverStart;
+
+        boolean dry = dryRun || settings.isDryRun();
+        InjectionEngine engine = settings.createEngine(root, resolver, dry, dataFolder(root));
+        if (roots.size() > 1) {
+            // Roots already run concurrently, a pool per root would oversubscribe the cores
+            engine.setParallelism(1);
+        } else if (parallelism != null) {
+            engine.setParallelism(parallelism);
+        }
+        InjectionReport report = new InjectionReport(engine.run(plan), resolverLoadNanos);
+
+        List<String> lines = dry ? report.toPlanLines(showValues) : List.of(report.toSummary());
+        List<String> prefixed = new ArrayList<>(lines.size());
+        for (String line : lines) {
+            prefixed.add(prefix + line);
+        }
+        print(prefixed.toArray(new String[0]));
+    }
+
+    private int rollback(Path root) {
+        try {
+            BackupStore store = loadSettings(root).createBackupStore(dataFolder(root));
+            if (store == null) {
+                print("Backups are disabled");
+                return EXIT_FAILURE;
+            }
+            List<Path> restored = store.rollback(rollbackId);
+            print("Restored " + restored.size() + " files as they were before " + rollbackId);
+            return EXIT_OK;
+        } catch (NoSuchFileException e) {
+            print("No backup " + rollbackId + " in " + dataFolder(root));
+            return EXIT_FAILURE;
+        } catch (IOException | RuntimeException e) {
+            print("Rollback failed: " + e);
+            return EXIT_FAILURE;
+        }
+    }
+
+    /**
+     * Applies the changes of every entry targeting the filter file to stdin, in declaration order,
+     * leaving out the entries and changes whose condition does not hold.
+     * Nothing is written to stdout on failure, so the exit code is always 1 then, whatever {@code stop-on-error}
+     * says: a pipeline redirecting stdout to the file must not replace it with nothing.
+     */
+    private int filter(Path root, InputStream in) {
+        InjectionSettings settings;
+        try {
+            settings = loadSettings(root);
+        } catch (IOException | RuntimeException e) {
+            print("Failed to read " + configFile(root) + ": " + e.getMessage());
+            return EXIT_FAILURE;
+        }
+
+        try {
+            FileProcessor processor = FileProcessorFactory.getProcessor(filterTarget);
+            if (!(processor instanceof StructuredFileProcessor)) {
+                throw new IllegalArgumentException("Filtering is not supported for " + filterTarget);
+            }
+
+            ExpandingVariableResolver resolver = new ExpandingVariableResolver(createResolver(root, settings));
+            List<PlannedChange> changes = new ArrayList<>();
+            if (settings.getReplacements() != null) {
+                String target = root.relativize(root.resolve(filterTarget).normalize()).toString().replace('\\', '/');
+                for (PlannedReplacement replacement : ReplacementPlan.compile(settings.getReplacements(), root).expand(root).getReplacements()) {
+                    boolean matches = replacement.isGlob()
+                        ? GlobExpander.matches(replacement.getFile(), target)
+                        : replacement.getTarget().equals(root.resolve(target));
+                    if (matches && holds(replacement.getCondition(), resolver)) {
+                        for (PlannedChange change : replacement.getChanges()) {
+                            if (holds(change.getCondition(), resolver)) {
+                                changes.add(change);
+                            }
+                        }
+                    }
+                }
+            }
+
+            byte[] content = in.readAllBytes();
+            List<String> missingVariables = new ArrayList<>();
+            RequiredVariableValidator validator = new RequiredVariableValidator(settings.isStopOnMissingRequired(), missingVariables);
+            ProcessingContext context = new ProcessingContext(validator, resolver);
+            byte[] output = ((StructuredFileProcessor<?>) processor).transform(content, changes, context);
+
+            if (settings.isStopOnMissingRequired()) {
+                // Like a run, also report the variables missing from the values of other variables
+                Set<String> missing = new LinkedHashSet<>(missingVariables);
+                missing.addAll(resolver.getMissingVariables());
+                if (!missing.isEmpty()) {
+                    throw new MissingRequiredVariableException(new ArrayList<>(missing));
+                }
+            }
+            out.write(output != null ? output : content);
+            out.flush();
+            return EXIT_OK;
+        } catch (MissingRequiredVariableException e) {
+            print("Missing required variables: " + String.join(", ", e.getMissingVariables()));
+            return EXIT_FAILURE;
+        } catch (IOException | RuntimeException e) {
+            print("Configuration processing failed: " + e);
+            return EXIT_FAILURE;
+        }
+    }
+
+    private static boolean holds(Condition condition, VariableResolver resolver) {
+        return condition == null || condition.evaluate(resolver);
+    }
+
+    /**
+     * Prints messages to stderr, stdout being reserved for filtered content. Lines of a root are never interleaved.
+     */
+    private void print(String... lines) {
+        synchronized (err) {
+            for (String line : lines) {
+                err.println(line);
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package fr.mediavee.configinjector.command;
+
+import fr.mediavee.configinjector.ConfigInjector;
+import fr.mediavee.configinjector.backup.BackupStore;
+import fr.mediavee.configinjector.engine.InjectionReport;
+import fr.mediavee.configinjector.exception.MissingRequiredVariableException;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabExecutor;
+
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+/**
+ * Handles {@code /configinjector}. Configuration loading, file I/O and parsing always run on the
+ * async scheduler, only the messages sent back to the sender are scheduled on the main thread.
+ */
+public class ConfigInjectorCommand implements TabExecutor {
+
+    private static final List<String> SUBCOMMANDS = List.of("plan", "reload", "backups", "rollback");
+
+    private static final String SHOW_VALUES = "--show-values";
+
+    private final ConfigInjector plugin;
+
+    public ConfigInjectorCommand(ConfigInjector plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        if (args.length == 0) {
+            return false;
+        }
+
+        switch (args[0].toLowerCase()) {
+            case "plan":
+                if (args.length > 1 && !args[1].equalsIgnoreCase(SHOW_VALUES)) {
+                    return false;
+                }
+                plan(sender, args.length > 1);
+                return true;
+            case "reload":
+                reload(sender, args.length > 1 ? args[1] : null);
+                return true;
+            case "backups":
+                backups(sender);
+                return true;
+            case "rollback":
+                if (args.length < 2) {
+                    return false;
+                }
+                rollback(sender, args[1]);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
+        List<String> completions = new ArrayList<>();
+        if (args.length == 1) {
+            addMatching(completions, SUBCOMMANDS, args[0]);
+        } else if (args.length == 2 && args[0].equalsIgnoreCase("plan")) {
+            addMatching(completions, List.of(SHOW_VALUES), args[1]);
+        } else if (args.length == 2 && args[0].equalsIgnoreCase("reload")) {
+            addMatching(completions, configuredFiles(), args[1]);
+        } else if (args.length == 2 && args[0].equalsIgnoreCase("rollback")) {
+            addMatching(completions, plugin.getBackupIds(), args[1]);
+        }
+        return completions;
+    }
+
+    private void plan(CommandSender sender, boolean showValues) {
+        sender.sendMessage("Computing injection plan...");
+
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+            List<String> lines;
+            try {
+                InjectionReport report = plugin.runInjection(true);
+                lines = report != null ? report.toPlanLines(showValues) : List.of("No replacements configured");
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to compute injection plan", e);
+                lines = List.of("Failed to compute injection plan: " + e.getMessage());
+            }
+
+            sendSync(sender, lines);
+        });
+    }
+
+    private void reload(CommandSender sender, String file) {
+        sender.sendMessage(file != null ? "Reloading " + file + "..." : "Reloading configuration...");
+
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+            String message;
+            try {
+                plugin.reloadSettings();
+                InjectionReport report = file != null ? plugin.runInjection(false, file) : plugin.runIncrementalInjection();
+
+                if (report == null) {
+                    message = "No replacements configured";
+                } else if (file != null && report.getResult().getProcessedFiles() == 0) {
+                    message = "No replacement targets " + file;
+                } else {
+                    plugin.writeReport(report);
+                    message = report.toSummary();
+                }
+            } catch (MissingRequiredVariableException e) {
+                plugin.getLogger().log(Level.SEVERE, "Missing required variables during reload", e);
+                message = "Missing required variables: " + String.join(", ", e.getMissingVariables());
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to reload configuration", e);
+                message = "Reload failed: " + e.getMessage();
+            }
+
+            sendSync(sender, List.of(message));
+        });
+    }
+
+    private void backups(CommandSender sender) {
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+            List<String> lines = new ArrayList<>();
+            try {
+                BackupStore store = plugin.getBackupStore();
+                List<String> ids = store != null ? store.list() : List.of();
+                if (store == null) {
+                    lines.add("Backups are disabled, set backup: true to keep them");
+                } else if (ids.isEmpty()) {
+                    lines.add("No backups");
+                }
+                for (String id : ids) {
+                    lines.add(id + ": " + store.read(id).size() + " files");
+                }
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to list backups", e);
+                lines.add("Failed to list backups: " + e.getMessage());
+            }
+
+            sendSync(sender, lines);
+        });
+    }
+
+    private void rollback(CommandSender sender, String id) {
+        sender.sendMessage("Rolling back the files overwritten by " + id + "...");
+
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+            String message;
+            try {
+                BackupStore store = plugin.getBackupStore();
+                if (store == null) {
+                    message = "Backups are disabled";
+                } else {
+                    List<Path> restored;
+                    try {
+                        restored = store.rollback(id);
+                    } finally {
+                        plugin.refreshBackupIds();
+                    }
+                    plugin.getLogger().info("Rolled back " + id + ": " + restored);
+                    message = "Restored " + restored.size() + " files as they were before " + id;
+                }
+            } catch (NoSuchFileException e) {
+                message = "No backup " + id;
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to roll back " + id, e);
+                message = "Rollback failed: " + e.getMessage();
+            }
+
+            sendSync(sender, List.of(message));
+        });
+    }
+
+    private void sendSync(CommandSender sender, List<String> lines) {
+        plugin.getServer().getScheduler().runTask(plugin, () -> lines.forEach(sender::sendMessage));
+    }
+
+    private List<String> configuredFiles() {
+        List<String> files = new ArrayList<>();
+        for (Map<?, ?> replacement : plugin.getConfig().getMapList("replacements")) {
+            Object file = replacement.get("file");
+            if (file != null) {
+                files.add(file.toString());
+            }
+        }
+        return files;
+    }
+
+    private static void addMatching(List<String> completions, List<String> candidates, String prefix) {
+        for (String candidate : candidates) {
+            if (candidate.toLowerCase().startsWith(prefix.toLowerCase())) {
+                completions.add(candidate);
+            }
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package fr.mediavee.configinjector.engine;
+
+import fr.mediavee.configinjector.plan.PlannedChange;
+import fr.mediavee.configinjector.resolver.VariableResolver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Maps every variable to the files and paths whose value references it, along with a fingerprint
+ * of the value each variable had when the files were last injected.
+ * Comparing the fingerprints of two runs of the same plan tells which variables changed,
+ * and the index then tells exactly which files depend on them.
+ */
+public class DependencyIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(DependencyIndex.class.getName());
+    private static final String UNSET = "-";
+
+    private final String planFingerprint;
+    private final Map<String, List<Dependency>> dependencies;
+    private final Map<String, String> valueFingerprints;
+
+    private DependencyIndex(String planFingerprint, Map<String, List<Dependency>> dependencies, Map<String, String> valueFingerprints) {
+        this.planFingerprint = planFingerprint;
+        this.dependencies = dependencies;
+        this.valueFingerprints = valueFingerprints;
+    }
+
+    /**
+     * Builds the index of the coalesced targets of a run. The plan fingerprint covers the changes
+     * whose condition held, so a condition changing outcome makes the indexes incomparable.
+     *
+     * @param targets the changes of every target file, in declaration order
+     * @param variables the resolved values, fingerprinted to be compared with a later run
+     */
+    static DependencyIndex build(Map<Path, List<PlannedChange>> targets, VariableResolver variables) {
+        MessageDigest plan = newDigest();
+        Map<String, List<Dependency>> dependencies = new TreeMap<>();
+
+        for (Map.Entry<Path, List<PlannedChange>> target : targets.entrySet()) {
+            update(plan, target.getKey().toString());
+            for (PlannedChange change : target.getValue()) {
+                update(plan, change.getPath());
+                update(plan, change.getValue().getSource());
+                Set<String> names = new LinkedHashSet<>(change.getValue().getVariableNames());
+                if (change.getCondition() != null) {
+                    update(plan, change.getCondition().getSource());
+                    names.addAll(change.getCondition().getVariableNames());
+                }
+                for (String name : names) {
+                    dependencies.computeIfAbsent(name, key -> new ArrayList<>()).add(new Dependency(target.getKey(), change.getPath()));
+                }
+            }
+        }
+
+        Map<String, String> valueFingerprints = new TreeMap<>();
+        for (String name : dependencies.keySet()) {
+            valueFingerprints.put(name, fingerprint(variables.getVariable(name)));
+        }
+        return new DependencyIndex(HexFormat.of().formatHex(plan.digest()), dependencies, valueFingerprints);
+    }
+
+    /**
+     * Loads an index saved by {@link #save(Path)}.
+     *
+     * @return the index, or null if it is missing or unreadable
+     */
+    public static DependencyIndex load(Path indexPath) {
+        if (!Files.exists(indexPath)) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream input = Files.newInputStream(indexPath)) {
+            properties.load(input);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to read dependency index: " + indexPath, e);
+            return null;
+        }
+
+        String planFingerprint = properties.getProperty("plan");
+        if (planFingerprint == null) {
+            return null;
+        }
+        Map<String, List<Dependency>> dependencies = new TreeMap<>();
+        Map<String, String> valueFingerprints = new TreeMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (!key.startsWith("var.")) {
+                continue;
+            }
+            String[] lines = properties.getProperty(key).split("\n");
+            String name = key.substring("var.".length());
+            List<Dependency> uses = new ArrayList<>();
+            for (int i = 1; i < lines.length; i++) {
+                int separator = lines[i].indexOf('\t');
+                if (separator > 0) {
+                    uses.add(new Dependency(Path.of(lines[i].substring(0, separator)), lines[i].substring(separator + 1)));
+                }
+            }
+            valueFingerprints.put(name, lines[0]);
+            dependencies.put(name, uses);
+        }
+        return new DependencyIndex(planFingerprint, dependencies, valueFingerprints);
+    }
+
+    /**
+     * Writes the index. Values are only stored as fingerprints.
+     */
+    public void save(Path indexPath) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("plan", planFingerprint);
+        for (Map.Entry<String, List<Dependency>> entry : dependencies.entrySet()) {
+            StringBuilder value = new StringBuilder(valueFingerprints.get(entry.getKey()));
+            for (Dependency dependency : entry.getValue()) {
+                value.append('\n').append(dependency.file).append('\t').append(dependency.path);
+            }
+            properties.setProperty("var." + entry.getKey(), value.toString());
+        }
+
+        Path parent = indexPath.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        FileLocks.withLock(indexPath, () -> {
+            Path tempFile = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+            try (OutputStream output = Files.newOutputStream(tempFile)) {
+                properties.store(output, "ConfigInjector variable dependencies, do not edit");
+            }
+            return Files.move(tempFile, indexPath, StandardCopyOption.REPLACE_EXISTING);
+        });
+    }
+
+    /**
+     * Lists the variables whose value differs from the one recorded in a previous index.
+     *
+     * @return the changed variables, or null if the previous index was built from another plan and cannot be compared
+     */
+    public Set<String> changedSince(DependencyIndex previous) {
+        if (previous == null || !planFingerprint.equals(previous.planFingerprint)) {
+            return null;
+        }
+        Set<String> changed = new LinkedHashSet<>();
+        for (Map.Entry<String, String> entry : valueFingerprints.entrySet()) {
+            if (!entry.getValue().equals(previous.valueFingerprints.get(entry.getKey()))) {
+                changed.add(entry.getKey());
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return the files referencing at least one of the variables
+     */
+    public Set<Path> getDependentFiles(Collection<String> variables) {
+        Set<Path> files = new LinkedHashSet<>();
+        for (String variable : variables) {
+            for (Dependency dependency : getDependencies(variable)) {
+                files.add(dependency.file);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * @return the file and path of every value referencing the variable, in declaration order
+     */
+    public List<Dependency> getDependencies(String variable) {
+        return dependencies.getOrDefault(variable, List.of());
+    }
+
+    public Set<String> getVariables() {
+        return dependencies.keySet();
+    }
+
+    private static String fingerprint(String value) {
+        if (value == null) {
+            return UNSET;
+        }
+        MessageDigest digest = newDigest();
+        update(digest, value);
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * A value referencing a variable: the absolute target file and the path of the value in it.
+     */
+    public static final class Dependency {
+        private final Path file;
+        private final String path;
+
+        Dependency(Path file, String path) {
+            this.file = file;
+            this.path = path;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        @Override
+        public String toString() {
+            return file + ": " + path;
+        }
+    }
+}
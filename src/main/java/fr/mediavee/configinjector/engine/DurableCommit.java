@@ -0,0 +1,367 @@
+package fr.mediavee.configinjector.engine;
+
+import fr.mediavee.configinjector.processor.ContentWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Collects the writes of a run and makes them durable together.
+ * Every write goes to a temporary sibling of its target. {@link #commit()} then syncs all of them
+ * concurrently, renames each one atomically over its target and syncs every parent directory once,
+ * so a crash leaves each file either entirely old or entirely new, for the cost of one batched sync
+ * instead of one per file.
+ * A symbolic link is kept: the file it points to is the one replaced. The permissions and the owner of the file
+ * are copied to its replacement; when the owner cannot be set, or when the file cannot be renamed over, as with a
+ * file bind-mounted into a container, the content is written in place instead, durably but not atomically.
+ */
+public class DurableCommit implements ContentWriter {
+
+    private static final Logger LOGGER = Logger.getLogger(DurableCommit.class.getName());
+    private static final int MAX_SYNC_THREADS = 16;
+
+    private final List<Staged> staged = new ArrayList<>();
+
+    /**
+     * Writes the content to a temporary sibling of the file, to be renamed over it on commit.
+     * Must be called while the file is locked, so its current state is the one the content was computed from.
+     * The file is locked again to be replaced, and only replaced if its content is still that one, so the
+     * read-modify-write stays atomic against the writers coming in between.
+     *
+     * @param previousContent the content the new one was computed from, read from the file again if null
+     */
+    @Override
+    public void write(Path file, byte[] previousContent, byte[] content) throws IOException {
+        Path target = file.toAbsolutePath().normalize();
+        // Staged next to the file a link points to, so the rename replaces that file and leaves the link in place
+        Path real = Files.exists(target) ? target.toRealPath() : target;
+        BasicFileAttributes expected = attributes(real);
+        byte[] expectedHash = hash(previousContent != null ? previousContent : readIfExists(real));
+        Path temp = Files.createTempFile(real.getParent(), "." + real.getFileName() + ".", ".tmp");
+        boolean inPlace;
+        try {
+            inPlace = !copyAttributes(real, temp);
+            Files.write(temp, content);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        synchronized (staged) {
+            staged.add(new Staged(target, real, temp, expected, expectedHash, inPlace));
+        }
+    }
+
+    /**
+     * Registers an action run once the file has been renamed into place. It is not run if the file
+     * was changed by someone else since it was written, or if the commit fails.
+     */
+    public void whenCommitted(Path file, CommitAction action) {
+        Path target = file.toAbsolutePath().normalize();
+        synchronized (staged) {
+            for (int i = staged.size() - 1; i >= 0; i--) {
+                if (staged.get(i).target.equals(target)) {
+                    staged.get(i).actions.add(action);
+                    return;
+                }
+            }
+        }
+        throw new IllegalStateException("No write staged for " + file);
+    }
+
+    /**
+     * @return the number of files waiting to be committed
+     */
+    public int size() {
+        synchronized (staged) {
+            return staged.size();
+        }
+    }
+
+    /**
+     * Syncs, renames and syncs the directories of every staged file. A file failing to be replaced does not keep
+     * the others from being replaced: the first failure is thrown once every file has been tried, and the temporary
+     * files not renamed are deleted.
+     *
+     * @return the files renamed into place
+     */
+    public Set<Path> commit() throws IOException {
+        List<Staged> files;
+        synchronized (staged) {
+            files = new ArrayList<>(staged);
+            staged.clear();
+        }
+        Set<Path> committed = new LinkedHashSet<>();
+        if (files.isEmpty()) {
+            return committed;
+        }
+
+        IOException failure = null;
+        try {
+            IOException[] syncFailures = syncAll(files);
+
+            Set<Path> directories = new LinkedHashSet<>();
+            for (int i = 0; i < files.size(); i++) {
+                Staged file = files.get(i);
+                try {
+                    if (syncFailures[i] != null) {
+                        throw syncFailures[i];
+                    }
+                    if (rename(file)) {
+                        committed.add(file.target);
+                        directories.add(file.real.getParent());
+                    }
+                } catch (IOException e) {
+                    LOGGER.log(Level.SEVERE, "Failed to replace " + file.target, e);
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+            for (Path directory : directories) {
+                syncDirectory(directory);
+            }
+        } finally {
+            for (Staged file : files) {
+                if (!committed.contains(file.target)) {
+                    deleteQuietly(file.temp);
+                }
+            }
+        }
+
+        for (Staged file : files) {
+            if (committed.contains(file.target)) {
+                for (CommitAction action : file.actions) {
+                    action.run();
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return committed;
+    }
+
+    /**
+     * @return the failure to sync each file, null for the files synced
+     */
+    private static IOException[] syncAll(List<Staged> files) throws IOException {
+        IOException[] failures = new IOException[files.size()];
+        if (files.size() == 1) {
+            failures[0] = sync(files.get(0).temp);
+            return failures;
+        }
+
+        // Concurrent syncs let the file system and the storage group them, like a group commit
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(files.size(), MAX_SYNC_THREADS), runnable -> {
+            Thread thread = new Thread(runnable, "ConfigInjector-sync-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<IOException>> futures = new ArrayList<>(files.size());
+            for (Staged file : files) {
+                futures.add(executor.submit(() -> sync(file.temp)));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                failures[i] = futures.get(i).get();
+            }
+            return failures;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while syncing written files", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to sync written files", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the failure to sync the file, null if it was synced
+     */
+    private static IOException sync(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+            return null;
+        } catch (IOException e) {
+            return e;
+        }
+    }
+
+    private static boolean rename(Staged file) throws IOException {
+        return FileLocks.withLock(file.target, () -> {
+            // Attributes first, they are cheap; equal ones may still hide a write keeping the size and the time
+            if (!file.isUnchanged(attributes(file.real)) || !MessageDigest.isEqual(file.expectedHash, hash(readIfExists(file.real)))) {
+                LOGGER.warning("Not replacing " + file.target + ": it was modified by another process since it was read");
+                return false;
+            }
+            if (!file.inPlace) {
+                try {
+                    Files.move(file.temp, file.real, StandardCopyOption.ATOMIC_MOVE);
+                    return true;
+                } catch (FileSystemException e) {
+                    // Atomic renames unsupported, or a mount point that cannot be replaced (EBUSY, EXDEV)
+                    LOGGER.log(Level.WARNING, "Cannot rename over " + file.target + ", writing it in place instead", e);
+                }
+            }
+            writeInPlace(file.temp, file.real);
+            return true;
+        });
+    }
+
+    private static void writeInPlace(Path temp, Path file) throws IOException {
+        ByteBuffer content = ByteBuffer.wrap(Files.readAllBytes(temp));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+            channel.force(true);
+        }
+        Files.delete(temp);
+    }
+
+    private static void syncDirectory(Path directory) {
+        // Makes the renames durable. Not every platform can open a directory, Windows notably cannot.
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Cannot sync directory " + directory, e);
+        }
+    }
+
+    /**
+     * Copies the permissions and the owner of a file to its replacement.
+     *
+     * @return false if the owner could not be set, so the file must be written in place to keep it
+     */
+    private static boolean copyAttributes(Path from, Path to) throws IOException {
+        PosixFileAttributeView source = Files.getFileAttributeView(from, PosixFileAttributeView.class);
+        PosixFileAttributeView target = Files.getFileAttributeView(to, PosixFileAttributeView.class);
+        if (source == null || target == null || !Files.exists(from)) {
+            return true;
+        }
+        target.setPermissions(source.readAttributes().permissions());
+
+        UserPrincipal owner = Files.getOwner(from);
+        if (owner.equals(Files.getOwner(to))) {
+            return true;
+        }
+        try {
+            Files.setOwner(to, owner);
+            return true;
+        } catch (IOException e) {
+            // Only a privileged process may give a file away
+            LOGGER.log(Level.FINE, "Cannot give " + to + " the owner of " + from, e);
+            return false;
+        }
+    }
+
+    private static byte[] readIfExists(Path file) throws IOException {
+        try {
+            return Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the SHA-256 of the content, null for a file that does not exist
+     */
+    private static byte[] hash(byte[] content) {
+        if (content == null) {
+            return null;
+        }
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * @return the attributes of the file, null if it does not exist
+     */
+    private static BasicFileAttributes attributes(Path file) throws IOException {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to delete temporary file " + file, e);
+        }
+    }
+
+    /**
+     * Work done once a file has been committed.
+     */
+    @FunctionalInterface
+    public interface CommitAction {
+        void run() throws IOException;
+    }
+
+    private static class Staged {
+        private final Path target;
+        private final Path real;
+        private final Path temp;
+        private final long expectedSize;
+        private final FileTime expectedModified;
+        private final byte[] expectedHash;
+        private final boolean inPlace;
+        private final List<CommitAction> actions = new ArrayList<>();
+
+        private Staged(Path target, Path real, Path temp, BasicFileAttributes expected, byte[] expectedHash, boolean inPlace) {
+            this.target = target;
+            this.real = real;
+            this.temp = temp;
+            this.expectedSize = expected != null ? expected.size() : -1;
+            this.expectedModified = expected != null ? expected.lastModifiedTime() : null;
+            this.expectedHash = expectedHash;
+            this.inPlace = inPlace;
+        }
+
+        /**
+         * Compares the size and the modification time at the full precision of the file system, so a write in the
+         * same millisecond as the read is still noticed where the file system records finer times.
+         */
+        private boolean isUnchanged(BasicFileAttributes current) {
+            if (current == null || expectedModified == null) {
+                return current == null && expectedModified == null;
+            }
+            return current.size() == expectedSize && current.lastModifiedTime().equals(expectedModified);
+        }
+    }
+}
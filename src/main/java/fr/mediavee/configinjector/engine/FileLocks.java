@@ -0,0 +1,103 @@
+package fr.mediavee.configinjector.engine;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Serializes read-modify-write cycles on a single file, both within this JVM and across processes.
+ * In-process callers are serialized on one of a fixed set of lock stripes chosen by the file path,
+ * so unrelated files stay parallel. Other processes, such as the command line injector or another
+ * server sharing the same files, are excluded by an OS lock on a {@code .<name>.lock} sidecar file
+ * next to the target. The sidecar is left in place: deleting it would race with a process about to lock it.
+ * Locking a file again from within its own action does not lock its sidecar twice.
+ */
+public final class FileLocks {
+
+    private static final Logger LOGGER = Logger.getLogger(FileLocks.class.getName());
+    private static final int STRIPES = 64;
+    private static final ReentrantLock[] LOCKS = new ReentrantLock[STRIPES];
+    // Stripes are shared by unrelated files, so their hold count cannot tell which sidecars this thread holds
+    private static final ThreadLocal<Set<Path>> HELD = ThreadLocal.withInitial(HashSet::new);
+
+    static {
+        for (int i = 0; i < STRIPES; i++) {
+            LOCKS[i] = new ReentrantLock();
+        }
+    }
+
+    private FileLocks() {
+    }
+
+    /**
+     * Runs the action while holding both the in-process and the cross-process lock of the file.
+     * When the file system does not support OS locks, only the in-process lock is held.
+     */
+    public static <T> T withLock(Path file, Action<T> action) throws IOException {
+        Path path = file.toAbsolutePath().normalize();
+        ReentrantLock lock = LOCKS[stripe(path)];
+        Set<Path> held = HELD.get();
+        lock.lock();
+        if (!held.add(path)) {
+            // The OS lock is already held by this thread through an outer call
+            try {
+                return action.run();
+            } finally {
+                lock.unlock();
+            }
+        }
+        try (FileChannel channel = openSidecar(path)) {
+            // Released when the channel is closed
+            lockSidecar(channel, path);
+            return action.run();
+        } finally {
+            held.remove(path);
+            lock.unlock();
+        }
+    }
+
+    static Path sidecar(Path file) {
+        return file.resolveSibling("." + file.getFileName() + ".lock");
+    }
+
+    static int stripe(Path file) {
+        return Math.floorMod(file.toAbsolutePath().normalize().hashCode(), STRIPES);
+    }
+
+    private static FileChannel openSidecar(Path path) {
+        try {
+            return FileChannel.open(sidecar(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        } catch (IOException | UnsupportedOperationException e) {
+            LOGGER.log(Level.WARNING, "Cannot create lock file for " + path + ", locking within this process only", e);
+            return null;
+        }
+    }
+
+    private static FileLock lockSidecar(FileChannel channel, Path path) {
+        if (channel == null) {
+            return null;
+        }
+        try {
+            return channel.lock();
+        } catch (IOException | UnsupportedOperationException | OverlappingFileLockException e) {
+            LOGGER.log(Level.WARNING, "Cannot lock " + path + " against other processes, locking within this process only", e);
+            return null;
+        }
+    }
+
+    /**
+     * Work done while a file is locked.
+     */
+    @FunctionalInterface
+    public interface Action<T> {
+        T run() throws IOException;
+    }
+}
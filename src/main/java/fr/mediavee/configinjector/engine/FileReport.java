@@ -0,0 +1,81 @@
+package fr.mediavee.configinjector.engine;
+
+import fr.mediavee.configinjector.processor.FileDiff;
+import fr.mediavee.configinjector.processor.FileMetrics;
+
+/**
+ * Outcome of processing a single target file.
+ */
+public class FileReport {
+
+    private final String file;
+    private final String format;
+    private final boolean modified;
+    private final boolean skipped;
+    private final FileMetrics metrics;
+    private final FileDiff diff;
+    private final boolean conflict;
+
+    public FileReport(String file, String format, boolean modified, boolean skipped, FileMetrics metrics) {
+        this(file, format, modified, skipped, metrics, null);
+    }
+
+    public FileReport(String file, String format, boolean modified, boolean skipped, FileMetrics metrics, FileDiff diff) {
+        this(file, format, modified, skipped, metrics, diff, false);
+    }
+
+    private FileReport(String file, String format, boolean modified, boolean skipped, FileMetrics metrics, FileDiff diff, boolean conflict) {
+        this.file = file;
+        this.format = format;
+        this.modified = modified;
+        this.skipped = skipped;
+        this.metrics = metrics;
+        this.diff = diff;
+        this.conflict = conflict;
+    }
+
+    /**
+     * @return the report of the same processing, the new content having been dropped because another process changed
+     * the file between its read and its replacement
+     */
+    public FileReport asConflict() {
+        return new FileReport(file, format, false, false, metrics, diff, true);
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     * @return the processor format, or null if the file was skipped before a processor was chosen
+     */
+    public String getFormat() {
+        return format;
+    }
+
+    public boolean isModified() {
+        return modified;
+    }
+
+    public boolean isSkipped() {
+        return skipped;
+    }
+
+    /**
+     * @return true if the file was left as another process changed it, without the new content
+     */
+    public boolean isConflict() {
+        return conflict;
+    }
+
+    public FileMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the changes a dry run would apply, or null if the file was really processed
+     */
+    public FileDiff getDiff() {
+        return diff;
+    }
+}
@@ -0,0 +1,154 @@
+package fr.mediavee.configinjector.engine;
+
+import fr.mediavee.configinjector.processor.FileProcessorFactory;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Expands glob targets such as {@code plugins/*}{@code /config.yml} or {@code **}{@code /database.yml}
+ * into the matching files of a server root.
+ * The walk starts at the longest literal prefix of the pattern and only descends into
+ * directories that can still match, so unrelated parts of the tree are never listed.
+ */
+public class GlobExpander {
+
+    private static final String GLOB_CHARS = "*?[{";
+
+    public static boolean isGlob(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            if (GLOB_CHARS.indexOf(pattern.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tells whether a path relative to the root matches a glob pattern, with the same rules as {@link #expand}.
+     *
+     * @param relativePath the path, using '/' as separator
+     */
+    public static boolean matches(String pattern, String relativePath) {
+        String normalized = pattern.replace('\\', '/').replaceAll("/+", "/");
+        FileSystem fileSystem = FileSystems.getDefault();
+        Path path = Path.of(relativePath);
+        if (fileSystem.getPathMatcher("glob:" + normalized).matches(path)) {
+            return true;
+        }
+        return normalized.startsWith("**/") && fileSystem.getPathMatcher("glob:" + normalized.substring(3)).matches(path);
+    }
+
+    /**
+     * Lists the files matching a glob pattern relative to the root.
+     * Files without a suitable processor are ignored.
+     *
+     * @return the matching paths relative to the root, using '/' as separator, in lexicographic order
+     */
+    public static List<String> expand(Path root, String pattern) throws IOException {
+        String[] segments = pattern.replace('\\', '/').split("/+");
+
+        int literalCount = 0;
+        while (literalCount < segments.length - 1 && !isGlob(segments[literalCount])) {
+            literalCount++;
+        }
+
+        Path base = root;
+        for (int i = 0; i < literalCount; i++) {
+            base = base.resolve(segments[i]);
+        }
+        if (!Files.isDirectory(base)) {
+            return Collections.emptyList();
+        }
+
+        String[] remaining = Arrays.copyOfRange(segments, literalCount, segments.length);
+        GlobWalker walker = new GlobWalker(root, base, remaining);
+        Files.walkFileTree(base, walker);
+
+        Collections.sort(walker.matches);
+        return walker.matches;
+    }
+
+    private static class GlobWalker extends SimpleFileVisitor<Path> {
+        private final Path root;
+        private final Path base;
+        private final String[] segments;
+        private final PathMatcher[] segmentMatchers;
+        private final PathMatcher matcher;
+        private final PathMatcher rootlessMatcher;
+        private final List<String> matches = new ArrayList<>();
+
+        private GlobWalker(Path root, Path base, String[] segments) {
+            this.root = root;
+            this.base = base;
+            this.segments = segments;
+
+            FileSystem fileSystem = base.getFileSystem();
+            this.segmentMatchers = new PathMatcher[segments.length];
+            for (int i = 0; i < segments.length; i++) {
+                if (!segments[i].equals("**")) {
+                    segmentMatchers[i] = fileSystem.getPathMatcher("glob:" + segments[i]);
+                }
+            }
+
+            String relativePattern = String.join("/", segments);
+            this.matcher = fileSystem.getPathMatcher("glob:" + relativePattern);
+            // A leading "**/" should also match files directly under the base directory
+            this.rootlessMatcher = relativePattern.startsWith("**/")
+                ? fileSystem.getPathMatcher("glob:" + relativePattern.substring(3))
+                : null;
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+            if (dir.equals(base)) {
+                return FileVisitResult.CONTINUE;
+            }
+            return canContainMatches(base.relativize(dir)) ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            Path relative = base.relativize(file);
+            if (attrs.isRegularFile() && (matcher.matches(relative) || (rootlessMatcher != null && rootlessMatcher.matches(relative)))) {
+                String path = root.relativize(file).toString().replace('\\', '/');
+                if (FileProcessorFactory.isSupported(path)) {
+                    matches.add(path);
+                }
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException exc) {
+            return FileVisitResult.CONTINUE;
+        }
+
+        private boolean canContainMatches(Path relativeDir) {
+            for (int i = 0; i < relativeDir.getNameCount(); i++) {
+                if (i >= segments.length) {
+                    return false;
+                }
+                if (segmentMatchers[i] == null) {
+                    return true;
+                }
+                // The last segment names files, a directory at that depth cannot contain matches
+                if (i == segments.length - 1 || !segmentMatchers[i].matches(relativeDir.getName(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
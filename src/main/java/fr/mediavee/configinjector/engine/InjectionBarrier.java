@@ -0,0 +1,79 @@
+package fr.mediavee.configinjector.engine;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Lets threads wait for parts of an injection running in the background.
+ * A waiter is released as soon as no pending file lives under the directories it depends on,
+ * or when the run ends, successfully or not.
+ */
+public class InjectionBarrier implements InjectionListener {
+
+    private final Set<Path> pendingFiles = new HashSet<>();
+    private boolean targetsKnown;
+    private boolean finished;
+    private Throwable failure;
+
+    @Override
+    public synchronized void onTargetsResolved(List<Path> files) {
+        pendingFiles.addAll(files);
+        targetsKnown = true;
+        notifyAll();
+    }
+
+    @Override
+    public synchronized void onFileProcessed(Path file, FileReport report) {
+        pendingFiles.remove(file);
+        notifyAll();
+    }
+
+    /**
+     * Marks the run as finished, releasing every waiter.
+     *
+     * @param failure the error that ended the run, null if it succeeded
+     */
+    public synchronized void complete(Throwable failure) {
+        this.failure = failure;
+        this.finished = true;
+        notifyAll();
+    }
+
+    /**
+     * Waits until every target file under one of the directories has been processed.
+     *
+     * @param directories normalized absolute directories
+     */
+    public synchronized void awaitDirectories(Collection<Path> directories) throws InterruptedException {
+        while (!finished && (!targetsKnown || hasPendingFileUnder(directories))) {
+            wait();
+        }
+    }
+
+    public synchronized void awaitCompletion() throws InterruptedException {
+        while (!finished) {
+            wait();
+        }
+    }
+
+    /**
+     * @return the error that ended the run, null if it succeeded or is still running
+     */
+    public synchronized Throwable getFailure() {
+        return failure;
+    }
+
+    private boolean hasPendingFileUnder(Collection<Path> directories) {
+        for (Path file : pendingFiles) {
+            for (Path directory : directories) {
+                if (file.startsWith(directory)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,605 @@
+package fr.mediavee.configinjector.engine;
+
+import fr.mediavee.configinjector.backup.BackupStore;
+import fr.mediavee.configinjector.exception.MissingRequiredVariableException;
+import fr.mediavee.configinjector.plan.PlannedChange;
+import fr.mediavee.configinjector.plan.PlannedReplacement;
+import fr.mediavee.configinjector.plan.ReplacementPlan;
+import fr.mediavee.configinjector.processor.ContentWriter;
+import fr.mediavee.configinjector.processor.FileDiff;
+import fr.mediavee.configinjector.processor.FileMetrics;
+import fr.mediavee.configinjector.processor.FileMetrics.Phase;
+import fr.mediavee.configinjector.processor.FileProcessor;
+import fr.mediavee.configinjector.processor.FileProcessorFactory;
+import fr.mediavee.configinjector.processor.ProcessingContext;
+import fr.mediavee.configinjector.resolver.VariableResolver;
+import fr.mediavee.configinjector.resolver.impl.ExpandingVariableResolver;
+import fr.mediavee.configinjector.resolver.impl.MapVariableResolver;
+import fr.mediavee.configinjector.template.Condition;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Applies the configured replacements to the files of a server root.
+ * Every variable referenced by the plan is resolved in a single bulk lookup before any file is opened,
+ * so files only render values from that snapshot.
+ * Files are processed one after the other unless a parallelism greater than one is set,
+ * in which case they are fanned out over a bounded worker pool, largest first and within a memory budget.
+ * Each file is written under its {@link FileLocks} lock, so concurrent runs only serialize on the files they share.
+ * With durable writes, modified files are staged and made durable together by a {@link DurableCommit} at the end of the run.
+ */
+public class InjectionEngine {
+
+    private static final Logger LOGGER = Logger.getLogger(InjectionEngine.class.getName());
+
+    private final Path serverRoot;
+    private final VariableResolver resolver;
+    private final boolean stopOnMissingRequired;
+    private int parallelism = 1;
+    private long memoryBudget = Long.MAX_VALUE;
+    private InjectionManifest manifest;
+    private boolean dryRun;
+    private boolean durableWrites;
+    private BackupStore backupStore;
+    private Path dependencyIndexPath;
+    private boolean incremental;
+    private Path targetFilter;
+    private InjectionListener listener;
+
+    public InjectionEngine(Path serverRoot, VariableResolver resolver, boolean stopOnMissingRequired) {
+        this.serverRoot = serverRoot;
+        this.resolver = resolver;
+        this.stopOnMissingRequired = stopOnMissingRequired;
+    }
+
+    /**
+     * Parses a {@code parallelism} setting: {@code auto} uses one worker per available processor,
+     * a positive integer sets the worker count explicitly.
+     *
+     * @param value the raw setting, may be null
+     * @return the number of workers, 1 when the setting is absent
+     */
+    public static int parseParallelism(String value) {
+        if (value == null || value.isBlank()) {
+            return 1;
+        }
+        if (value.trim().equalsIgnoreCase("auto")) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        try {
+            int parallelism = Integer.parseInt(value.trim());
+            if (parallelism >= 1) {
+                return parallelism;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException("Invalid parallelism value: " + value + " (expected 'auto' or a positive integer)");
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Parses a {@code memory-budget-mb} setting: {@code auto} allows a quarter of the maximum heap,
+     * a positive integer sets the budget in megabytes.
+     *
+     * @param value the raw setting, may be null
+     * @return the budget in bytes
+     */
+    public static long parseMemoryBudget(String value) {
+        if (value == null || value.isBlank() || value.trim().equalsIgnoreCase("auto")) {
+            return Runtime.getRuntime().maxMemory() / 4;
+        }
+        try {
+            long megabytes = Long.parseLong(value.trim());
+            if (megabytes >= 1) {
+                return megabytes * 1024 * 1024;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException("Invalid memory budget: " + value + " (expected 'auto' or a positive number of megabytes)");
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Bounds the estimated heap used by the files processed concurrently. Files are started largest first
+     * and smaller ones fill the remaining budget, a file estimated above the whole budget runs alone.
+     * Only applies when the parallelism is greater than one.
+     *
+     * @param memoryBudget the budget in bytes
+     */
+    public void setMemoryBudget(long memoryBudget) {
+        if (memoryBudget < 1) {
+            throw new IllegalArgumentException("Memory budget must be positive: " + memoryBudget);
+        }
+        this.memoryBudget = memoryBudget;
+    }
+
+    public InjectionManifest getManifest() {
+        return manifest;
+    }
+
+    /**
+     * Sets the manifest used to skip files that have not changed since they were last processed.
+     * A null manifest disables change detection.
+     */
+    public void setManifest(InjectionManifest manifest) {
+        this.manifest = manifest;
+    }
+
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    /**
+     * In a dry run every file goes through the whole pipeline but nothing is written:
+     * each {@link FileReport} carries the diff instead, and missing required variables
+     * are reported in the result rather than thrown.
+     */
+    public void setDryRun(boolean dryRun) {
+        this.dryRun = dryRun;
+    }
+
+    public boolean isDurableWrites() {
+        return durableWrites;
+    }
+
+    /**
+     * Sets whether modified files are synced to disk and atomically renamed into place once all of them are written,
+     * instead of being overwritten in place without sync.
+     */
+    public void setDurableWrites(boolean durableWrites) {
+        this.durableWrites = durableWrites;
+    }
+
+    public BackupStore getBackupStore() {
+        return backupStore;
+    }
+
+    /**
+     * Sets the store keeping the previous content of the files overwritten by the run, null for none.
+     */
+    public void setBackupStore(BackupStore backupStore) {
+        this.backupStore = backupStore;
+    }
+
+    public Path getDependencyIndexPath() {
+        return dependencyIndexPath;
+    }
+
+    /**
+     * Sets where the {@link DependencyIndex} of the last complete run is kept, null for none.
+     * It is saved after every successful run that is neither dry nor restricted to a target.
+     */
+    public void setDependencyIndexPath(Path dependencyIndexPath) {
+        this.dependencyIndexPath = dependencyIndexPath;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Sets whether the run only processes the files depending on a variable whose value changed since the
+     * saved dependency index. When the plan changed since, or there is no index, every file is processed.
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    public Path getTargetFilter() {
+        return targetFilter;
+    }
+
+    /**
+     * Restricts the run to a single target file. Entries targeting other files, including other
+     * matches of a glob, are ignored. A null filter runs every entry.
+     */
+    public void setTargetFilter(Path targetFilter) {
+        this.targetFilter = targetFilter != null ? targetFilter.toAbsolutePath().normalize() : null;
+    }
+
+    public InjectionListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Sets the listener notified of the progress of the run, null for none.
+     */
+    public void setListener(InjectionListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Compiles and runs raw replacement entries.
+     *
+     * @throws IllegalArgumentException if an entry is malformed
+     */
+    public InjectionResult run(List<Map<String, Object>> replacements) throws IOException {
+        if (replacements == null || replacements.isEmpty()) {
+            return new InjectionResult(List.of(), 0);
+        }
+        return run(ReplacementPlan.compile(replacements, serverRoot));
+    }
+
+    public InjectionResult run(ReplacementPlan plan) throws IOException {
+        if (plan == null || plan.isEmpty()) {
+            return new InjectionResult(List.of(), 0);
+        }
+
+        long start = System.nanoTime();
+        // Matrix entries join the other targets, so every world or instance is processed in the same batch
+        plan = plan.expand(serverRoot);
+        ExpandingVariableResolver variables = resolveVariables(plan);
+        long lookupNanos = System.nanoTime() - start;
+
+        List<FileTarget> targets = coalesce(plan, variables);
+        if (targets.isEmpty()) {
+            return new InjectionResult(List.of(), List.of(), lookupNanos, System.nanoTime() - start);
+        }
+
+        List<String> missingVariables = findMissingVariables(targets, variables);
+        if (!missingVariables.isEmpty() && !dryRun) {
+            throw new MissingRequiredVariableException(missingVariables);
+        }
+
+        DependencyIndex index = null;
+        if (dependencyIndexPath != null && targetFilter == null && !dryRun) {
+            index = buildDependencyIndex(targets, variables);
+            if (incremental) {
+                targets = selectChangedTargets(targets, index);
+            }
+        }
+
+        if (listener != null) {
+            List<Path> files = new ArrayList<>(targets.size());
+            for (FileTarget target : targets) {
+                files.add(target.path);
+            }
+            listener.onTargetsResolved(files);
+        }
+
+        DurableCommit commit = durableWrites && !dryRun ? new DurableCommit() : null;
+        BackupStore.Session backup = backupStore != null && !dryRun ? backupStore.begin() : null;
+        ContentWriter writer = commit != null ? commit : ContentWriter.DIRECT;
+        if (backup != null) {
+            writer = backup.wrap(writer);
+        }
+        try {
+            List<FileReport> reports;
+            if (parallelism <= 1 || targets.size() <= 1) {
+                reports = runSequential(targets, variables, writer, commit);
+            } else {
+                reports = runParallel(targets, variables, writer, commit);
+            }
+
+            long commitNanos = 0;
+            if (commit != null) {
+                long commitStart = System.nanoTime();
+                Set<Path> committed = commit.commit();
+                commitNanos = System.nanoTime() - commitStart;
+                for (int i = 0; i < targets.size(); i++) {
+                    if (reports.get(i).isModified() && !committed.contains(targets.get(i).path)) {
+                        reports.set(i, reports.get(i).asConflict());
+                    }
+                }
+                if (listener != null) {
+                    for (int i = 0; i < targets.size(); i++) {
+                        listener.onFileProcessed(targets.get(i).path, reports.get(i));
+                    }
+                }
+            }
+
+            if (index != null) {
+                saveDependencyIndex(index);
+            }
+            return new InjectionResult(reports, missingVariables, lookupNanos, commitNanos, System.nanoTime() - start);
+        } catch (IOException | RuntimeException e) {
+            // Files processed before the failure are still written, as they would be without durable writes
+            if (commit != null) {
+                try {
+                    commit.commit();
+                } catch (IOException | RuntimeException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            throw e;
+        } finally {
+            if (!dryRun) {
+                saveManifest();
+            }
+            if (backup != null) {
+                finishBackup(backup);
+            }
+        }
+    }
+
+    /**
+     * Drops the entries and changes whose condition does not hold, expands glob targets, then groups the remaining
+     * changes by normalized target path so every file is parsed and written once. Every condition is evaluated once,
+     * before any file is opened or any glob is expanded, and a file left without changes is never opened.
+     * Changes keep their declaration order, so a later entry still overrides an earlier one.
+     */
+    private List<FileTarget> coalesce(ReplacementPlan plan, VariableResolver variables) throws IOException {
+        Map<Path, FileTarget> targetsByPath = new LinkedHashMap<>();
+
+        for (PlannedReplacement replacement : plan.getReplacements()) {
+            if (!holds(replacement.getCondition(), variables)) {
+                continue;
+            }
+            List<PlannedChange> changes = new ArrayList<>(replacement.getChanges().size());
+            for (PlannedChange change : replacement.getChanges()) {
+                if (holds(change.getCondition(), variables)) {
+                    changes.add(change);
+                }
+            }
+            if (changes.isEmpty()) {
+                continue;
+            }
+
+            if (!replacement.isGlob()) {
+                addTarget(targetsByPath, replacement.getFile(), replacement.getTarget(), changes);
+                continue;
+            }
+            for (String file : expandGlob(replacement.getFile())) {
+                addTarget(targetsByPath, file, serverRoot.resolve(file).toAbsolutePath().normalize(), changes);
+            }
+        }
+
+        return new ArrayList<>(targetsByPath.values());
+    }
+
+    private static boolean holds(Condition condition, VariableResolver variables) {
+        return condition == null || condition.evaluate(variables);
+    }
+
+    private void addTarget(Map<Path, FileTarget> targetsByPath, String file, Path fullPath, List<PlannedChange> changes) {
+        if (targetFilter != null && !targetFilter.equals(fullPath)) {
+            return;
+        }
+        targetsByPath.computeIfAbsent(fullPath, path -> new FileTarget(file, path)).changes.addAll(changes);
+    }
+
+    /**
+     * Resolves every variable of the values and conditions of the plan at once, along with the variables
+     * their values reference, one more bulk lookup per level of nesting.
+     *
+     * @return a resolver serving the looked up values, with the placeholders in them expanded once per run
+     */
+    private ExpandingVariableResolver resolveVariables(ReplacementPlan plan) {
+        Set<String> names = plan.getVariableNames();
+        Map<String, String> values = names.isEmpty() ? Map.of() : ExpandingVariableResolver.lookup(resolver, names);
+        return new ExpandingVariableResolver(new MapVariableResolver(values));
+    }
+
+    /**
+     * @return the required variables of the changes to apply that were not found, in declaration order, including
+     * those of the defaults used in place of unset variables and those referenced by the values of variables
+     */
+    private List<String> findMissingVariables(List<FileTarget> targets, ExpandingVariableResolver variables) {
+        if (!stopOnMissingRequired) {
+            return new ArrayList<>();
+        }
+
+        Set<String> missing = new LinkedHashSet<>();
+        for (FileTarget target : targets) {
+            for (PlannedChange change : target.changes) {
+                change.getValue().collectMissingVariables(variables, missing);
+            }
+        }
+        missing.addAll(variables.getMissingVariables());
+        return new ArrayList<>(missing);
+    }
+
+    private List<String> expandGlob(String pattern) throws IOException {
+        List<String> files = GlobExpander.expand(serverRoot, pattern);
+        if (files.isEmpty()) {
+            LOGGER.warning("No file matches " + pattern);
+        }
+        return files;
+    }
+
+    private void saveManifest() {
+        if (manifest == null) {
+            return;
+        }
+        try {
+            manifest.save();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to save injection manifest", e);
+        }
+    }
+
+    private static DependencyIndex buildDependencyIndex(List<FileTarget> targets, VariableResolver variables) {
+        Map<Path, List<PlannedChange>> changes = new LinkedHashMap<>();
+        for (FileTarget target : targets) {
+            changes.put(target.path, target.changes);
+        }
+        return DependencyIndex.build(changes, variables);
+    }
+
+    /**
+     * Keeps only the targets depending on a variable that changed since the saved index.
+     */
+    private List<FileTarget> selectChangedTargets(List<FileTarget> targets, DependencyIndex index) {
+        Set<String> changed = index.changedSince(DependencyIndex.load(dependencyIndexPath));
+        if (changed == null) {
+            LOGGER.fine("Plan changed since the last run, processing every file");
+            return targets;
+        }
+
+        Set<Path> dependents = index.getDependentFiles(changed);
+        List<FileTarget> selected = new ArrayList<>(dependents.size());
+        for (FileTarget target : targets) {
+            if (dependents.contains(target.path)) {
+                selected.add(target);
+            }
+        }
+        if (!changed.isEmpty()) {
+            LOGGER.info(selected.size() + " of " + targets.size() + " files depend on the changed variables " + changed);
+        }
+        return selected;
+    }
+
+    private void saveDependencyIndex(DependencyIndex index) {
+        try {
+            index.save(dependencyIndexPath);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to save dependency index", e);
+        }
+    }
+
+    private void finishBackup(BackupStore.Session backup) {
+        try {
+            if (backup.finish()) {
+                LOGGER.info("Previous content of the overwritten files saved as backup " + backup.getId());
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to save backup " + backup.getId(), e);
+        }
+    }
+
+    private List<FileReport> runSequential(List<FileTarget> targets, VariableResolver variables,
+                                           ContentWriter writer, DurableCommit commit) throws IOException {
+        List<FileReport> reports = new ArrayList<>(targets.size());
+        for (FileTarget target : targets) {
+            reports.add(processFileReplacements(target, variables, writer, commit));
+        }
+
+        return reports;
+    }
+
+    private List<FileReport> runParallel(List<FileTarget> targets, VariableResolver variables,
+                                         ContentWriter writer, DurableCommit commit) throws IOException {
+        List<SizeAwareScheduler.Task<FileReport>> tasks = new ArrayList<>(targets.size());
+        for (FileTarget target : targets) {
+            tasks.add(new SizeAwareScheduler.Task<>(estimateHeapUsage(target), () -> processFileReplacements(target, variables, writer, commit)));
+        }
+
+        int workers = Math.min(parallelism, targets.size());
+        ExecutorService executor = Executors.newFixedThreadPool(workers, new WorkerThreadFactory());
+        try {
+            return new SizeAwareScheduler(executor, workers, memoryBudget).run(tasks);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static long estimateHeapUsage(FileTarget target) {
+        long size;
+        try {
+            size = Files.size(target.path);
+        } catch (IOException e) {
+            // Missing files fail fast once processed
+            size = 0;
+        }
+        return FileProcessorFactory.getProcessor(target.file).estimateHeapUsage(size);
+    }
+
+    private FileReport processFileReplacements(FileTarget target, VariableResolver variables,
+                                               ContentWriter writer, DurableCommit commit) throws IOException {
+        if (!Files.exists(target.path)) {
+            throw new FileNotFoundException("Configuration file not found: " + target.path);
+        }
+
+        // With durable writes the file is replaced on commit, under the lock again and only if it still holds what was read here
+        FileReport report = dryRun
+            ? applyReplacements(target, variables, writer, null)
+            : FileLocks.withLock(target.path, () -> applyReplacements(target, variables, writer, commit));
+        // Staged files are only reported once committed
+        if (listener != null && commit == null) {
+            listener.onFileProcessed(target.path, report);
+        }
+        return report;
+    }
+
+    private FileReport applyReplacements(FileTarget target, VariableResolver variables,
+                                         ContentWriter writer, DurableCommit commit) throws IOException {
+        String filePath = target.file;
+        List<PlannedChange> changes = target.changes;
+        Path fullPath = target.path;
+        FileMetrics metrics = new FileMetrics();
+
+        if (manifest == null || dryRun) {
+            FileProcessor processor = FileProcessorFactory.getProcessor(filePath);
+            FileDiff diff = dryRun ? new FileDiff() : null;
+            boolean modified = processor.applyChanges(fullPath, changes, new ProcessingContext(null, variables, metrics, diff, writer));
+            return new FileReport(filePath, processor.getFormat(), modified, false, metrics, diff);
+        }
+
+        long start = System.nanoTime();
+        String changesHash = hashResolvedChanges(changes, variables);
+        metrics.add(Phase.RESOLVE, System.nanoTime() - start);
+
+        if (manifest.isUpToDate(fullPath, changesHash)) {
+            return new FileReport(filePath, null, false, true, metrics);
+        }
+
+        FileProcessor processor = FileProcessorFactory.getProcessor(filePath);
+        boolean modified = processor.applyChanges(fullPath, changes, new ProcessingContext(null, variables, metrics, null, writer));
+        if (modified && commit != null) {
+            // The file only holds its new content once renamed into place
+            commit.whenCommitted(fullPath, () -> manifest.record(fullPath, changesHash));
+        } else {
+            manifest.record(fullPath, changesHash);
+        }
+        return new FileReport(filePath, processor.getFormat(), modified, false, metrics);
+    }
+
+    private static String hashResolvedChanges(List<PlannedChange> changes, VariableResolver variables) {
+        List<String[]> resolvedChanges = new ArrayList<>(changes.size());
+        for (PlannedChange change : changes) {
+            String value = change.getValue().render(null, variables);
+            resolvedChanges.add(new String[] { change.getPath(), value });
+        }
+        return InjectionManifest.hashChanges(resolvedChanges);
+    }
+
+    private static class FileTarget {
+        private final String file;
+        private final Path path;
+        private final List<PlannedChange> changes = new ArrayList<>();
+
+        private FileTarget(String file, Path path) {
+            this.file = file;
+            this.path = path;
+        }
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "ConfigInjector-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package fr.mediavee.configinjector.engine;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Receives progress notifications from an {@link InjectionEngine} run.
+ * Methods may be called from worker threads.
+ */
+public interface InjectionListener {
+
+    /**
+     * Called once the targets of the run are known, after glob expansion and before any file is processed.
+     *
+     * @param files the normalized absolute paths of the files about to be processed
+     */
+    default void onTargetsResolved(List<Path> files) {
+    }
+
+    /**
+     * Called after a file has been processed, whether it was modified, unchanged or skipped.
+     *
+     * @param file the normalized absolute path of the file
+     */
+    default void onFileProcessed(Path file, FileReport report) {
+    }
+}
@@ -0,0 +1,242 @@
+package fr.mediavee.configinjector.engine;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Persistent record of the state of every target file as last written by the injector.
+ * A file whose size, modification time and resolved change set all match its entry can be
+ * skipped without being parsed again. When only the modification time differs, the content
+ * hash is used to confirm the file is really unchanged.
+ */
+public class InjectionManifest {
+
+    private static final Logger LOGGER = Logger.getLogger(InjectionManifest.class.getName());
+
+    private final Path manifestPath;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<String> updated = ConcurrentHashMap.newKeySet();
+
+    private InjectionManifest(Path manifestPath) {
+        this.manifestPath = manifestPath;
+    }
+
+    /**
+     * Loads the manifest stored at the given path. A missing or unreadable manifest yields an empty one.
+     */
+    public static InjectionManifest load(Path manifestPath) {
+        InjectionManifest manifest = new InjectionManifest(manifestPath);
+
+        if (!Files.exists(manifestPath)) {
+            return manifest;
+        }
+
+        try {
+            manifest.entries.putAll(read(manifestPath));
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to read injection manifest: " + manifestPath, e);
+        }
+        return manifest;
+    }
+
+    private static Map<String, Entry> read(Path manifestPath) throws IOException {
+        Map<String, Entry> entries = new HashMap<>();
+        if (!Files.exists(manifestPath)) {
+            return entries;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream input = Files.newInputStream(manifestPath)) {
+            properties.load(input);
+        }
+
+        for (String key : properties.stringPropertyNames()) {
+            Entry entry = Entry.parse(properties.getProperty(key));
+            if (entry != null) {
+                entries.put(key, entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Checks whether a file is still exactly as it was last recorded with the given change set.
+     *
+     * @param file the target file
+     * @param changesHash the hash of the fully resolved change set for that file
+     * @return true if the file can be skipped
+     */
+    public boolean isUpToDate(Path file, String changesHash) throws IOException {
+        String key = key(file);
+        Entry entry = entries.get(key);
+        if (entry == null || !entry.changesHash.equals(changesHash)) {
+            return false;
+        }
+
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        if (attributes.size() != entry.size) {
+            return false;
+        }
+
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        if (lastModified == entry.lastModified) {
+            return true;
+        }
+
+        if (!hashFile(file).equals(entry.contentHash)) {
+            return false;
+        }
+
+        entries.put(key, new Entry(entry.size, lastModified, entry.contentHash, changesHash));
+        updated.add(key);
+        return true;
+    }
+
+    /**
+     * Records the current state of a file after it has been processed with the given change set.
+     */
+    public void record(Path file, String changesHash) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        String key = key(file);
+        entries.put(key, new Entry(attributes.size(), attributes.lastModifiedTime().toMillis(), hashFile(file), changesHash));
+        updated.add(key);
+    }
+
+    /**
+     * Writes the entries updated since the manifest was loaded back to disk. The file is re-read under its lock
+     * and only those entries are overlaid, so runs saving concurrently, in this process or another one,
+     * do not drop each other's entries.
+     */
+    public void save() throws IOException {
+        if (updated.isEmpty()) {
+            return;
+        }
+
+        Path parent = manifestPath.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        FileLocks.withLock(manifestPath, () -> {
+            Map<String, Entry> merged;
+            try {
+                merged = read(manifestPath);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to read injection manifest before saving it: " + manifestPath, e);
+                merged = new HashMap<>();
+            }
+            Set<String> saved = new HashSet<>(updated);
+            for (String key : saved) {
+                merged.put(key, entries.get(key));
+            }
+
+            Properties properties = new Properties();
+            for (Map.Entry<String, Entry> entry : merged.entrySet()) {
+                properties.setProperty(entry.getKey(), entry.getValue().toString());
+            }
+
+            Path tempFile = manifestPath.resolveSibling(manifestPath.getFileName() + ".tmp");
+            try (OutputStream output = Files.newOutputStream(tempFile)) {
+                properties.store(output, "ConfigInjector state, do not edit");
+            }
+            Files.move(tempFile, manifestPath, StandardCopyOption.REPLACE_EXISTING);
+            updated.removeAll(saved);
+            return null;
+        });
+    }
+
+    static String hashFile(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[8192];
+        try (InputStream input = Files.newInputStream(file)) {
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Hashes a list of resolved path/value pairs, in order.
+     */
+    public static String hashChanges(Iterable<String[]> resolvedChanges) {
+        MessageDigest digest = newDigest();
+        for (String[] change : resolvedChanges) {
+            for (String part : change) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            digest.update((byte) '\n');
+        }
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+            builder.append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    private static String key(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    private static class Entry {
+        private final long size;
+        private final long lastModified;
+        private final String contentHash;
+        private final String changesHash;
+
+        private Entry(long size, long lastModified, String contentHash, String changesHash) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.contentHash = contentHash;
+            this.changesHash = changesHash;
+        }
+
+        private static Entry parse(String value) {
+            String[] parts = value.split(";");
+            if (parts.length != 4) {
+                return null;
+            }
+            try {
+                return new Entry(Long.parseLong(parts[0]), Long.parseLong(parts[1]), parts[2], parts[3]);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return size + ";" + lastModified + ";" + contentHash + ";" + changesHash;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package fr.mediavee.configinjector.engine;
+
+import fr.mediavee.configinjector.processor.FileDiff;
+import fr.mediavee.configinjector.processor.FileMetrics;
+import fr.mediavee.configinjector.processor.FileMetrics.Phase;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Turns an {@link InjectionResult} into a one-line console summary and a JSON report.
+ * The JSON is written by hand so producing the report never loads Gson on boots where every file is skipped.
+ */
+public class InjectionReport {
+
+    private final InjectionResult result;
+    private final long resolverLoadNanos;
+    private final Instant timestamp = Instant.now();
+
+    /**
+     * @param result the result of the run
+     * @param resolverLoadNanos time spent building the variable resolvers, such as loading the .env file
+     */
+    public InjectionReport(InjectionResult result, long resolverLoadNanos) {
+        this.result = result;
+        this.resolverLoadNanos = resolverLoadNanos;
+    }
+
+    public InjectionResult getResult() {
+        return result;
+    }
+
+    public String toSummary() {
+        FileMetrics totals = totals();
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format(Locale.ROOT, "Processed %d files, modified %d files", result.getProcessedFiles(), result.getModifiedFiles()));
+        if (result.getSkippedFiles() > 0) {
+            builder.append(String.format(Locale.ROOT, ", skipped %d unchanged", result.getSkippedFiles()));
+        }
+        if (result.getConflictFiles() > 0) {
+            builder.append(String.format(Locale.ROOT, ", left %d changed by another process", result.getConflictFiles()));
+        }
+        builder.append(String.format(Locale.ROOT, " in %.1f ms (env %.1f ms, lookup %.1f ms",
+            millis(result.getElapsedNanos()), millis(resolverLoadNanos), millis(result.getVariableLookupNanos())));
+        for (Phase phase : Phase.values()) {
+            builder.append(String.format(Locale.ROOT, ", %s %.1f ms", name(phase), millis(totals.getNanos(phase))));
+        }
+        if (result.getCommitNanos() > 0) {
+            builder.append(String.format(Locale.ROOT, ", commit %.1f ms", millis(result.getCommitNanos())));
+        }
+        builder.append(String.format(Locale.ROOT, "; %d B in, %d B out)", totals.getBytesIn(), totals.getBytesOut()));
+        return builder.toString();
+    }
+
+    /**
+     * Describes the changes of a dry run, one line per file and per changed path, hiding the values read from the
+     * environment or the env file.
+     */
+    public List<String> toPlanLines() {
+        return toPlanLines(false);
+    }
+
+    /**
+     * Describes the changes of a dry run, one line per file and per changed path.
+     *
+     * @param showValues whether to show the values read from the environment or the env file, which may be secrets
+     */
+    public List<String> toPlanLines(boolean showValues) {
+        List<String> lines = new ArrayList<>();
+        int changedFiles = 0;
+
+        for (FileReport file : result.getFiles()) {
+            FileDiff diff = file.getDiff();
+            if (diff == null || diff.isEmpty()) {
+                continue;
+            }
+            changedFiles++;
+            lines.add(file.getFile() + " (" + file.getFormat() + ")");
+            for (FileDiff.Change change : diff.getChanges()) {
+                boolean hidden = change.isSensitive() && !showValues;
+                String oldValue = change.getOldValue() == null ? "<unset>" : hidden ? "<hidden>" : quote(change.getOldValue());
+                String newValue = hidden ? "<hidden>" : quote(change.getNewValue());
+                lines.add("  " + change.getPath() + ": " + oldValue + " -> " + newValue);
+            }
+        }
+
+        lines.add(0, String.format(Locale.ROOT, "Plan: %d of %d files would change", changedFiles, result.getProcessedFiles()));
+        if (!result.getMissingVariables().isEmpty()) {
+            lines.add("Missing required variables: " + String.join(", ", result.getMissingVariables()));
+        }
+        return lines;
+    }
+
+    public String toJson() {
+        FileMetrics totals = totals();
+        StringBuilder json = new StringBuilder(256 + result.getFiles().size() * 256);
+        json.append("{\n");
+        json.append("  \"timestamp\": ").append(quote(timestamp.toString())).append(",\n");
+        json.append("  \"elapsedMs\": ").append(format(millis(result.getElapsedNanos()))).append(",\n");
+        json.append("  \"resolverLoadMs\": ").append(format(millis(resolverLoadNanos))).append(",\n");
+        json.append("  \"variableLookupMs\": ").append(format(millis(result.getVariableLookupNanos()))).append(",\n");
+        json.append("  \"commitMs\": ").append(format(millis(result.getCommitNanos()))).append(",\n");
+        json.append("  \"processedFiles\": ").append(result.getProcessedFiles()).append(",\n");
+        json.append("  \"modifiedFiles\": ").append(result.getModifiedFiles()).append(",\n");
+        json.append("  \"skippedFiles\": ").append(result.getSkippedFiles()).append(",\n");
+        json.append("  \"conflictFiles\": ").append(result.getConflictFiles()).append(",\n");
+        json.append("  \"totals\": ");
+        appendMetrics(json, totals);
+        json.append(",\n  \"files\": [");
+
+        boolean first = true;
+        for (FileReport file : result.getFiles()) {
+            json.append(first ? "\n" : ",\n");
+            first = false;
+            json.append("    {\"file\": ").append(quote(file.getFile()));
+            json.append(", \"format\": ").append(file.getFormat() != null ? quote(file.getFormat()) : "null");
+            json.append(", \"modified\": ").append(file.isModified());
+            json.append(", \"skipped\": ").append(file.isSkipped());
+            json.append(", \"conflict\": ").append(file.isConflict());
+            json.append(", \"metrics\": ");
+            appendMetrics(json, file.getMetrics());
+            json.append('}');
+        }
+        json.append(first ? "]\n" : "\n  ]\n");
+        json.append("}\n");
+        return json.toString();
+    }
+
+    /**
+     * Writes the JSON report, replacing any previous one. Concurrent writers are serialized on the report file.
+     */
+    public void writeJson(Path reportPath) throws IOException {
+        Path parent = reportPath.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        byte[] json = toJson().getBytes(StandardCharsets.UTF_8);
+        FileLocks.withLock(reportPath, () -> {
+            Path tempFile = reportPath.resolveSibling(reportPath.getFileName() + ".tmp");
+            Files.write(tempFile, json);
+            return Files.move(tempFile, reportPath, StandardCopyOption.REPLACE_EXISTING);
+        });
+    }
+
+    private FileMetrics totals() {
+        FileMetrics totals = new FileMetrics();
+        for (FileReport file : result.getFiles()) {
+            FileMetrics metrics = file.getMetrics();
+            for (Phase phase : Phase.values()) {
+                totals.add(phase, metrics.getNanos(phase));
+            }
+            totals.addBytesIn(metrics.getBytesIn());
+            totals.addBytesOut(metrics.getBytesOut());
+        }
+        return totals;
+    }
+
+    private static void appendMetrics(StringBuilder json, FileMetrics metrics) {
+        json.append("{\"totalMs\": ").append(format(millis(metrics.getTotalNanos())));
+        for (Phase phase : Phase.values()) {
+            json.append(", \"").append(name(phase)).append("Ms\": ").append(format(millis(metrics.getNanos(phase))));
+        }
+        json.append(", \"bytesIn\": ").append(metrics.getBytesIn());
+        json.append(", \"bytesOut\": ").append(metrics.getBytesOut());
+        json.append('}');
+    }
+
+    private static String name(Phase phase) {
+        return phase.name().toLowerCase(Locale.ROOT);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private static String quote(String value) {
+        StringBuilder builder = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> builder.append("\\\"");
+                case '\\' -> builder.append("\\\\");
+                case '\n' -> builder.append("\\n");
+                case '\r' -> builder.append("\\r");
+                case '\t' -> builder.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        builder.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+                }
+            }
+        }
+        return builder.append('"').toString();
+    }
+}
@@ -0,0 +1,86 @@
+package fr.mediavee.configinjector.engine;
+
+import java.util.List;
+
+/**
+ * Summary of an injection run.
+ */
+public class InjectionResult {
+
+    private final List<FileReport> files;
+    private final List<String> missingVariables;
+    private final long variableLookupNanos;
+    private final long commitNanos;
+    private final long elapsedNanos;
+
+    public InjectionResult(List<FileReport> files, long elapsedNanos) {
+        this(files, List.of(), elapsedNanos);
+    }
+
+    public InjectionResult(List<FileReport> files, List<String> missingVariables, long elapsedNanos) {
+        this(files, missingVariables, 0, elapsedNanos);
+    }
+
+    public InjectionResult(List<FileReport> files, List<String> missingVariables, long variableLookupNanos, long elapsedNanos) {
+        this(files, missingVariables, variableLookupNanos, 0, elapsedNanos);
+    }
+
+    public InjectionResult(List<FileReport> files, List<String> missingVariables, long variableLookupNanos, long commitNanos, long elapsedNanos) {
+        this.files = List.copyOf(files);
+        this.missingVariables = List.copyOf(missingVariables);
+        this.variableLookupNanos = variableLookupNanos;
+        this.commitNanos = commitNanos;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public int getProcessedFiles() {
+        return files.size();
+    }
+
+    public int getModifiedFiles() {
+        return (int) files.stream().filter(FileReport::isModified).count();
+    }
+
+    public int getSkippedFiles() {
+        return (int) files.stream().filter(FileReport::isSkipped).count();
+    }
+
+    public int getConflictFiles() {
+        return (int) files.stream().filter(FileReport::isConflict).count();
+    }
+
+    /**
+     * @return the per-file reports, in declaration order
+     */
+    public List<FileReport> getFiles() {
+        return files;
+    }
+
+    /**
+     * @return the required variables that could not be resolved, only non-empty for dry runs
+     */
+    public List<String> getMissingVariables() {
+        return missingVariables;
+    }
+
+    /**
+     * @return the time spent on the bulk lookup of every variable of the run
+     */
+    public long getVariableLookupNanos() {
+        return variableLookupNanos;
+    }
+
+    /**
+     * @return the time spent making the written files durable, 0 without durable writes
+     */
+    public long getCommitNanos() {
+        return commitNanos;
+    }
+
+    /**
+     * @return the wall-clock duration of the run
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+}
@@ -0,0 +1,162 @@
+package fr.mediavee.configinjector.engine;
+
+import fr.mediavee.configinjector.backup.BackupStore;
+import fr.mediavee.configinjector.resolver.VariableNamespaces;
+import fr.mediavee.configinjector.resolver.VariableResolver;
+import fr.mediavee.configinjector.resolver.impl.CompositeVariableResolver;
+import fr.mediavee.configinjector.resolver.impl.EnvironmentFileResolver;
+import fr.mediavee.configinjector.resolver.impl.NamespacedVariableResolver;
+import fr.mediavee.configinjector.resolver.impl.SystemPropertyResolver;
+import fr.mediavee.configinjector.resolver.impl.SystemVariableResolver;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * The injection settings of config.yml, read the same way by the plugin and the command line.
+ * Missing or mistyped keys fall back to their default value, like Bukkit configuration getters.
+ */
+public class InjectionSettings {
+
+    private final boolean stopOnMissingRequired;
+    private final boolean stopOnError;
+    private final String envFile;
+    private final String parallelism;
+    private final String memoryBudget;
+    private final boolean skipUnchanged;
+    private final boolean dryRun;
+    private final boolean durableWrites;
+    private final boolean backup;
+    private final String backupKeep;
+    private final String backupMaxMb;
+    private final Object replacements;
+
+    private InjectionSettings(Map<String, ?> config) {
+        this.stopOnMissingRequired = getBoolean(config, "stop-on-missing-required", true);
+        this.stopOnError = getBoolean(config, "stop-on-error", false);
+        this.envFile = getString(config, "env-file", ".env");
+        this.parallelism = getString(config, "parallelism", "1");
+        this.memoryBudget = getString(config, "memory-budget-mb", "auto");
+        this.skipUnchanged = getBoolean(config, "skip-unchanged", true);
+        this.dryRun = getBoolean(config, "dry-run", false);
+        this.durableWrites = getBoolean(config, "durable-writes", false);
+        this.backup = getBoolean(config, "backup", false);
+        this.backupKeep = getString(config, "backup-keep", "10");
+        this.backupMaxMb = getString(config, "backup-max-mb", "64");
+        this.replacements = config.get("replacements");
+    }
+
+    /**
+     * @param config the top-level values of config.yml
+     */
+    public static InjectionSettings fromMap(Map<String, ?> config) {
+        return new InjectionSettings(config);
+    }
+
+    public boolean isStopOnMissingRequired() {
+        return stopOnMissingRequired;
+    }
+
+    public boolean isStopOnError() {
+        return stopOnError;
+    }
+
+    public String getEnvFile() {
+        return envFile;
+    }
+
+    public boolean isSkipUnchanged() {
+        return skipUnchanged;
+    }
+
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    public boolean isDurableWrites() {
+        return durableWrites;
+    }
+
+    public boolean isBackup() {
+        return backup;
+    }
+
+    /**
+     * @return the raw {@code replacements} section, null if absent
+     */
+    public Object getReplacements() {
+        return replacements;
+    }
+
+    /**
+     * Creates the resolver chain: system environment first, then the env file. Names prefixed with
+     * {@code env:}, {@code dotenv:} or {@code sys:} are only read from the system environment, the env file
+     * or the system properties respectively.
+     */
+    public VariableResolver createResolver(Path envFilePath) {
+        SystemVariableResolver system = new SystemVariableResolver();
+        EnvironmentFileResolver envFile = new EnvironmentFileResolver(envFilePath);
+        return new NamespacedVariableResolver(new CompositeVariableResolver(system, envFile), Map.of(
+            VariableNamespaces.ENV, system,
+            VariableNamespaces.DOTENV, envFile,
+            VariableNamespaces.SYSTEM_PROPERTIES, new SystemPropertyResolver()
+        ));
+    }
+
+    /**
+     * Creates the backup store kept in the data folder.
+     *
+     * @return the store, or null if backups are disabled
+     * @throws IllegalArgumentException if backup-keep or backup-max-mb is invalid
+     */
+    public BackupStore createBackupStore(Path dataFolder) {
+        if (!backup) {
+            return null;
+        }
+        return new BackupStore(dataFolder.resolve("backups"), parsePositive("backup-keep", backupKeep), parsePositive("backup-max-mb", backupMaxMb) * 1024L * 1024);
+    }
+
+    /**
+     * Creates an engine configured from these settings.
+     *
+     * @param dataFolder where the state of processed files, the dependency index and the backups are kept; the state is used
+     *                   unless the run is dry or skip-unchanged is off
+     * @throws IllegalArgumentException if parallelism, memory-budget-mb, backup-keep or backup-max-mb is invalid
+     */
+    public InjectionEngine createEngine(Path serverRoot, VariableResolver resolver, boolean dryRun, Path dataFolder) {
+        InjectionEngine engine = new InjectionEngine(serverRoot, resolver, stopOnMissingRequired);
+        engine.setParallelism(InjectionEngine.parseParallelism(parallelism));
+        engine.setMemoryBudget(InjectionEngine.parseMemoryBudget(memoryBudget));
+        engine.setDryRun(dryRun);
+        engine.setDurableWrites(durableWrites);
+        if (!dryRun && skipUnchanged) {
+            engine.setManifest(InjectionManifest.load(dataFolder.resolve("state.properties")));
+        }
+        if (!dryRun) {
+            engine.setBackupStore(createBackupStore(dataFolder));
+            engine.setDependencyIndexPath(dataFolder.resolve("dependencies.properties"));
+        }
+        return engine;
+    }
+
+    private static int parsePositive(String key, String value) {
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            if (parsed >= 1) {
+                return parsed;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException("Invalid " + key + " value: " + value + " (expected a positive integer)");
+    }
+
+    private static boolean getBoolean(Map<String, ?> config, String key, boolean defaultValue) {
+        Object value = config.get(key);
+        return value instanceof Boolean ? (Boolean) value : defaultValue;
+    }
+
+    private static String getString(Map<String, ?> config, String key, String defaultValue) {
+        Object value = config.get(key);
+        return value != null ? value.toString() : defaultValue;
+    }
+}
@@ -0,0 +1,144 @@
+package fr.mediavee.configinjector.engine;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Runs tasks on a worker pool, largest first, without letting the estimated memory of the running
+ * tasks exceed a budget. Whenever the next large task does not fit, smaller ones are admitted
+ * around it, so the total wall time stays close to the one of the largest task.
+ * A task estimated above the whole budget is admitted alone.
+ */
+class SizeAwareScheduler {
+
+    private final ExecutorService executor;
+    private final int maxConcurrent;
+    private final long memoryBudget;
+
+    SizeAwareScheduler(ExecutorService executor, int maxConcurrent, long memoryBudget) {
+        this.executor = executor;
+        this.maxConcurrent = maxConcurrent;
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Runs every task. Once a task fails no other task is started, and the failure of the first
+     * failed task in list order is thrown after the running ones complete.
+     *
+     * @return the results, in the order of the tasks
+     */
+    @SuppressWarnings("unchecked")
+    <T> List<T> run(List<Task<T>> tasks) throws IOException {
+        int count = tasks.size();
+        Object[] results = new Object[count];
+        Throwable[] failures = new Throwable[count];
+        long[] reserved = new long[count];
+
+        List<Integer> pending = new LinkedList<>();
+        for (int i = 0; i < count; i++) {
+            pending.add(i);
+        }
+        // Stable sort: equally sized tasks keep their declaration order
+        pending.sort(Comparator.comparingLong((Integer index) -> tasks.get(index).estimate).reversed());
+
+        CompletionService<Integer> completion = new ExecutorCompletionService<>(executor);
+        long available = memoryBudget;
+        int running = 0;
+        boolean failed = false;
+
+        while (running > 0 || (!failed && !pending.isEmpty())) {
+            if (!failed) {
+                Iterator<Integer> iterator = pending.iterator();
+                while (running < maxConcurrent && iterator.hasNext()) {
+                    int index = iterator.next();
+                    long cost = Math.min(tasks.get(index).estimate, memoryBudget);
+                    if (cost > available) {
+                        continue;
+                    }
+
+                    iterator.remove();
+                    available -= cost;
+                    reserved[index] = cost;
+                    running++;
+
+                    Callable<T> work = tasks.get(index).work;
+                    completion.submit(() -> {
+                        try {
+                            results[index] = work.call();
+                        } catch (Throwable t) {
+                            failures[index] = t;
+                        }
+                        return index;
+                    });
+                }
+            }
+
+            int done = take(completion);
+            running--;
+            available += reserved[done];
+            if (failures[done] != null) {
+                failed = true;
+            }
+        }
+
+        for (Throwable failure : failures) {
+            if (failure != null) {
+                rethrow(failure);
+            }
+        }
+
+        List<T> ordered = new ArrayList<>(count);
+        for (Object result : results) {
+            ordered.add((T) result);
+        }
+        return ordered;
+    }
+
+    private static int take(CompletionService<Integer> completion) throws IOException {
+        try {
+            return completion.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for configuration processing");
+        } catch (ExecutionException e) {
+            // Tasks never complete exceptionally, failures are captured in the failures array
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void rethrow(Throwable failure) throws IOException {
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        throw new IOException(failure);
+    }
+
+    static final class Task<T> {
+        private final long estimate;
+        private final Callable<T> work;
+
+        /**
+         * @param estimate the estimated memory needed by the task, in bytes
+         */
+        Task(long estimate, Callable<T> work) {
+            this.estimate = estimate;
+            this.work = work;
+        }
+    }
+}
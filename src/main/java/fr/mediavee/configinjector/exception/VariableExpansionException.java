@@ -0,0 +1,21 @@
+package fr.mediavee.configinjector.exception;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class VariableExpansionException extends RuntimeException {
+
+    private final List<String> chain;
+
+    public VariableExpansionException(String reason, List<String> chain) {
+        super(reason + ": " + String.join(" \u2192 ", chain));
+        this.chain = new ArrayList<>(chain);
+    }
+
+    /**
+     * @return the variables being expanded when the expansion failed, outermost first
+     */
+    public List<String> getChain() {
+        return chain;
+    }
+}
@@ -0,0 +1,261 @@
+package fr.mediavee.configinjector.plan;
+
+import fr.mediavee.configinjector.engine.GlobExpander;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code matrix} of a {@code replacements} entry: named dimensions, each one a list of values given literally
+ * or discovered by listing the directories under the server root matching a glob.
+ * The entry is repeated for every combination of values, with {@code {name}} replaced by the value in its
+ * {@code file}, paths, values and conditions, and {@code {NAME}} by the value upper-cased with every character
+ * other than a letter, a digit or {@code _} replaced by {@code _}, so {@code ${VIEW_DISTANCE_{WORLD}}} reads
+ * {@code VIEW_DISTANCE_WORLD_NETHER} for the world {@code world_nether}.
+ */
+public final class Matrix {
+
+    private final Map<String, Dimension> dimensions;
+    private final Map<?, ?> entry;
+    private final String location;
+
+    private Matrix(Map<String, Dimension> dimensions, Map<?, ?> entry, String location) {
+        this.dimensions = dimensions;
+        this.entry = entry;
+        this.location = location;
+    }
+
+    /**
+     * @param rawMatrix the {@code matrix} key of the entry
+     * @param entry the raw entry, repeated for every combination
+     * @param location the location of the entry, for error messages
+     * @throws IllegalArgumentException if a dimension is malformed
+     */
+    static Matrix compile(Object rawMatrix, Map<?, ?> entry, String location) {
+        String matrixLocation = location + ".matrix";
+        if (!(rawMatrix instanceof Map) || ((Map<?, ?>) rawMatrix).isEmpty()) {
+            throw invalid(matrixLocation, "expected a non-empty map of dimensions");
+        }
+
+        Map<String, Dimension> dimensions = new LinkedHashMap<>();
+        for (Map.Entry<?, ?> dimension : ((Map<?, ?>) rawMatrix).entrySet()) {
+            String name = String.valueOf(dimension.getKey());
+            String dimensionLocation = matrixLocation + "." + name;
+            if (!name.matches("[A-Za-z0-9_-]+")) {
+                throw invalid(dimensionLocation, "a dimension name may only contain letters, digits, '_' and '-'");
+            }
+            dimensions.put(name, compileDimension(dimension.getValue(), dimensionLocation));
+        }
+        return new Matrix(dimensions, entry, location);
+    }
+
+    private static Dimension compileDimension(Object value, String location) {
+        if (value instanceof List) {
+            List<String> values = new ArrayList<>();
+            for (Object item : (List<?>) value) {
+                if (!(item instanceof String || item instanceof Number) || item.toString().isEmpty()) {
+                    throw invalid(location, "expected non-empty strings but found " + item);
+                }
+                values.add(item.toString());
+            }
+            if (values.isEmpty()) {
+                throw invalid(location, "expected at least one value");
+            }
+            return new Dimension(values, null);
+        }
+
+        if (value instanceof Map && ((Map<?, ?>) value).get("directories") instanceof String) {
+            String pattern = ((String) ((Map<?, ?>) value).get("directories")).replace('\\', '/');
+            int separator = pattern.lastIndexOf('/');
+            String parent = separator < 0 ? "" : pattern.substring(0, separator);
+            String name = pattern.substring(separator + 1);
+            if (name.isEmpty() || GlobExpander.isGlob(parent)) {
+                throw invalid(location + ".directories", "only the last segment of '" + pattern + "' may be a glob");
+            }
+            return new Dimension(null, pattern);
+        }
+
+        throw invalid(location, "expected a list of values or a map with 'directories'");
+    }
+
+    /**
+     * @return true if a dimension is discovered on disk, so the matrix can only be expanded when the plan runs
+     */
+    public boolean isDiscovered() {
+        for (Dimension dimension : dimensions.values()) {
+            if (dimension.directories != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    /**
+     * Lists every combination of values, the first dimension varying slowest.
+     * Discovered values are the names of the matching directories, in lexicographic order; hidden ones are left out.
+     *
+     * @param serverRoot the directory the discovery globs are relative to
+     */
+    public List<Map<String, String>> combinations(Path serverRoot) throws IOException {
+        List<Map<String, String>> combinations = new ArrayList<>();
+        combinations.add(new LinkedHashMap<>());
+        for (Map.Entry<String, Dimension> dimension : dimensions.entrySet()) {
+            List<String> values = dimension.getValue().values != null
+                ? dimension.getValue().values
+                : discover(serverRoot, dimension.getValue().directories);
+            List<Map<String, String>> expanded = new ArrayList<>(combinations.size() * values.size());
+            for (Map<String, String> combination : combinations) {
+                for (String value : values) {
+                    Map<String, String> next = new LinkedHashMap<>(combination);
+                    next.put(dimension.getKey(), value);
+                    expanded.add(next);
+                }
+            }
+            combinations = expanded;
+        }
+        return combinations;
+    }
+
+    /**
+     * @return the combination used to validate the entry when the plan is compiled: every dimension set to its own name
+     */
+    Map<String, String> sampleCombination() {
+        Map<String, String> combination = new LinkedHashMap<>();
+        for (String name : dimensions.keySet()) {
+            combination.put(name, name);
+        }
+        return combination;
+    }
+
+    /**
+     * @return the entry with the placeholders of the combination replaced in every string, without its {@code matrix} key
+     */
+    Map<?, ?> instantiate(Map<String, String> combination) {
+        Map<String, String> placeholders = new LinkedHashMap<>();
+        for (Map.Entry<String, String> value : combination.entrySet()) {
+            placeholders.put("{" + value.getKey().toUpperCase() + "}", constantName(value.getValue()));
+            placeholders.put("{" + value.getKey() + "}", value.getValue());
+        }
+
+        Map<Object, Object> instance = new LinkedHashMap<>();
+        for (Map.Entry<?, ?> field : entry.entrySet()) {
+            if (!"matrix".equals(field.getKey())) {
+                instance.put(field.getKey(), substitute(field.getValue(), placeholders));
+            }
+        }
+        return instance;
+    }
+
+    static String describe(Map<String, String> combination) {
+        StringBuilder builder = new StringBuilder("[");
+        for (Map.Entry<String, String> value : combination.entrySet()) {
+            if (builder.length() > 1) {
+                builder.append(", ");
+            }
+            builder.append(value.getKey()).append('=').append(value.getValue());
+        }
+        return builder.append(']').toString();
+    }
+
+    private static Object substitute(Object value, Map<String, String> placeholders) {
+        if (value instanceof String) {
+            return substitute((String) value, placeholders);
+        }
+        if (value instanceof List) {
+            List<Object> list = new ArrayList<>();
+            for (Object item : (List<?>) value) {
+                list.add(substitute(item, placeholders));
+            }
+            return list;
+        }
+        if (value instanceof Map) {
+            Map<Object, Object> map = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> item : ((Map<?, ?>) value).entrySet()) {
+                map.put(item.getKey(), substitute(item.getValue(), placeholders));
+            }
+            return map;
+        }
+        return value;
+    }
+
+    private static String substitute(String value, Map<String, String> placeholders) {
+        if (value.indexOf('{') < 0) {
+            return value;
+        }
+        StringBuilder builder = new StringBuilder(value.length());
+        int i = 0;
+        while (i < value.length()) {
+            char c = value.charAt(i);
+            // ${name} is a variable, never a matrix placeholder
+            if (c == '{' && (i == 0 || value.charAt(i - 1) != '$')) {
+                int end = value.indexOf('}', i);
+                String replacement = end < 0 ? null : placeholders.get(value.substring(i, end + 1));
+                if (replacement != null) {
+                    builder.append(replacement);
+                    i = end + 1;
+                    continue;
+                }
+            }
+            builder.append(c);
+            i++;
+        }
+        return builder.toString();
+    }
+
+    private static String constantName(String value) {
+        StringBuilder builder = new StringBuilder(value.length());
+        for (char c : value.toUpperCase().toCharArray()) {
+            builder.append((c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' ? c : '_');
+        }
+        return builder.toString();
+    }
+
+    private static List<String> discover(Path serverRoot, String pattern) throws IOException {
+        int separator = pattern.lastIndexOf('/');
+        Path parent = separator < 0 ? serverRoot : serverRoot.resolve(pattern.substring(0, separator));
+        String glob = pattern.substring(separator + 1);
+        if (!Files.isDirectory(parent)) {
+            return List.of();
+        }
+
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(parent, Files::isDirectory)) {
+            for (Path child : children) {
+                String name = child.getFileName().toString();
+                if ((!name.startsWith(".") || glob.startsWith(".")) && matcher.matches(child.getFileName())) {
+                    names.add(name);
+                }
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    private static IllegalArgumentException invalid(String location, String reason) {
+        return new IllegalArgumentException("Invalid replacement at " + location + ": " + reason);
+    }
+
+    private static final class Dimension {
+        private final List<String> values;
+        private final String directories;
+
+        private Dimension(List<String> values, String directories) {
+            this.values = values;
+            this.directories = directories;
+        }
+    }
+}
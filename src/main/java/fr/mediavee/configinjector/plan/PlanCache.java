@@ -0,0 +1,44 @@
+package fr.mediavee.configinjector.plan;
+
+import fr.mediavee.configinjector.resolver.VariableNamespaces;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the last compiled plan along with the hash of the configuration it was compiled from,
+ * so reloads and watch triggers that leave the configuration untouched reuse it. The plan is also compiled again
+ * once a namespace prefix was registered or unregistered, as it changes how the placeholders of values read.
+ */
+public class PlanCache {
+
+    private String cachedHash;
+    private int cachedNamespaces;
+    private ReplacementPlan cachedPlan;
+
+    /**
+     * @param configuration the raw configuration file the plan is compiled from
+     * @param compiler compiles the plan when the configuration changed since the last call
+     */
+    public synchronized ReplacementPlan get(byte[] configuration, Supplier<ReplacementPlan> compiler) {
+        String hash = hash(configuration);
+        int namespaces = VariableNamespaces.getVersion();
+        if (cachedPlan == null || !hash.equals(cachedHash) || namespaces != cachedNamespaces) {
+            cachedPlan = compiler.get();
+            cachedHash = hash;
+            cachedNamespaces = namespaces;
+        }
+        return cachedPlan;
+    }
+
+    private static String hash(byte[] configuration) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(configuration));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
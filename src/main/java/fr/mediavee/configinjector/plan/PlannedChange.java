@@ -0,0 +1,55 @@
+package fr.mediavee.configinjector.plan;
+
+import fr.mediavee.configinjector.template.Condition;
+import fr.mediavee.configinjector.template.Template;
+
+import java.util.List;
+
+/**
+ * A single compiled change: the dotted path, already split into keys, and the tokenized value.
+ */
+public final class PlannedChange {
+
+    private final String path;
+    private final List<String> keys;
+    private final Template value;
+    private final Condition condition;
+
+    public PlannedChange(String path, Template value) {
+        this(path, value, null);
+    }
+
+    public PlannedChange(String path, Template value, Condition condition) {
+        this.path = path;
+        this.keys = List.of(path.split("\\."));
+        this.value = value;
+        this.condition = condition;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return the keys of the path, in order
+     */
+    public List<String> getKeys() {
+        return keys;
+    }
+
+    public Template getValue() {
+        return value;
+    }
+
+    /**
+     * @return the {@code when:} condition of the change, null if it always applies
+     */
+    public Condition getCondition() {
+        return condition;
+    }
+
+    @Override
+    public String toString() {
+        return path + ": " + value;
+    }
+}
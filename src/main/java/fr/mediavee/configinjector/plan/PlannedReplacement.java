@@ -0,0 +1,72 @@
+package fr.mediavee.configinjector.plan;
+
+import fr.mediavee.configinjector.template.Condition;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * A compiled {@code replacements} entry.
+ * Literal targets carry their resolved absolute path, glob targets are only expanded when the plan runs.
+ * An entry whose {@link Matrix} discovers its values on disk is kept unexpanded until {@link ReplacementPlan#expand}.
+ */
+public final class PlannedReplacement {
+
+    private final String file;
+    private final Path target;
+    private final List<PlannedChange> changes;
+    private final Condition condition;
+    private final Matrix matrix;
+
+    public PlannedReplacement(String file, Path target, List<PlannedChange> changes) {
+        this(file, target, changes, null);
+    }
+
+    public PlannedReplacement(String file, Path target, List<PlannedChange> changes, Condition condition) {
+        this(file, target, changes, condition, null);
+    }
+
+    PlannedReplacement(String file, Path target, List<PlannedChange> changes, Condition condition, Matrix matrix) {
+        this.file = file;
+        this.target = target;
+        this.changes = List.copyOf(changes);
+        this.condition = condition;
+        this.matrix = matrix;
+    }
+
+    /**
+     * @return the target as configured, relative to the server root
+     */
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     * @return the normalized absolute path of the target, or null for a glob
+     */
+    public Path getTarget() {
+        return target;
+    }
+
+    public boolean isGlob() {
+        return target == null;
+    }
+
+    public List<PlannedChange> getChanges() {
+        return changes;
+    }
+
+    /**
+     * @return the {@code when:} condition of the entry, null if it always applies
+     */
+    public Condition getCondition() {
+        return condition;
+    }
+
+    /**
+     * @return the matrix still to expand on disk, null for a regular entry
+     */
+    public Matrix getMatrix() {
+        return matrix;
+    }
+}
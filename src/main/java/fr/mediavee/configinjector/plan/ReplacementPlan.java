@@ -0,0 +1,258 @@
+package fr.mediavee.configinjector.plan;
+
+import fr.mediavee.configinjector.engine.GlobExpander;
+import fr.mediavee.configinjector.processor.FileProcessorFactory;
+import fr.mediavee.configinjector.template.Condition;
+import fr.mediavee.configinjector.template.Template;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The {@code replacements} section compiled once into typed, validated entries.
+ * Compilation fails on the first malformed entry with its location, such as
+ * {@code replacements[2].changes[1].path}, so nothing is processed from a broken configuration.
+ * Entries and changes may carry a {@code when} {@link Condition}, compiled with them.
+ * An entry with a {@link Matrix} is repeated for every combination of its values: literal values are expanded
+ * here, directories are discovered by {@link #expand(Path)} each time the plan runs.
+ */
+public final class ReplacementPlan {
+
+    private final List<PlannedReplacement> replacements;
+
+    private ReplacementPlan(List<PlannedReplacement> replacements) {
+        this.replacements = Collections.unmodifiableList(replacements);
+    }
+
+    public List<PlannedReplacement> getReplacements() {
+        return replacements;
+    }
+
+    public boolean isEmpty() {
+        return replacements.isEmpty();
+    }
+
+    /**
+     * Expands the entries whose matrix discovers its values on disk. A discovered combination whose
+     * literal target does not exist is left out, so the directories without the file are ignored.
+     *
+     * @param serverRoot the directory the discovery globs and the targets are relative to
+     * @return a plan without matrix entries, this plan if it has none
+     */
+    public ReplacementPlan expand(Path serverRoot) throws IOException {
+        boolean discovered = false;
+        for (PlannedReplacement replacement : replacements) {
+            discovered |= replacement.getMatrix() != null;
+        }
+        if (!discovered) {
+            return this;
+        }
+
+        List<PlannedReplacement> expanded = new ArrayList<>(replacements.size());
+        for (PlannedReplacement replacement : replacements) {
+            Matrix matrix = replacement.getMatrix();
+            if (matrix == null) {
+                expanded.add(replacement);
+                continue;
+            }
+            for (Map<String, String> combination : matrix.combinations(serverRoot)) {
+                PlannedReplacement instance = compileEntry(matrix.instantiate(combination),
+                    matrix.getLocation() + Matrix.describe(combination), serverRoot);
+                if (instance.isGlob() || Files.exists(instance.getTarget())) {
+                    expanded.add(instance);
+                }
+            }
+        }
+        return new ReplacementPlan(expanded);
+    }
+
+    /**
+     * Collects the variables read by the values and conditions of the plan, in order of first appearance.
+     * Those of the entries still to {@link #expand(Path)} are only known once expanded.
+     */
+    public Set<String> getVariableNames() {
+        Set<String> names = new LinkedHashSet<>();
+        for (PlannedReplacement replacement : replacements) {
+            if (replacement.getCondition() != null) {
+                names.addAll(replacement.getCondition().getVariableNames());
+            }
+            for (PlannedChange change : replacement.getChanges()) {
+                if (change.getCondition() != null) {
+                    names.addAll(change.getCondition().getVariableNames());
+                }
+                names.addAll(change.getValue().getVariableNames());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Compiles the raw {@code replacements} section as loaded from the configuration.
+     *
+     * @param rawReplacements the list of entries, each one a map with {@code file} and {@code changes}
+     * @param serverRoot the directory literal targets are resolved against
+     * @throws IllegalArgumentException if an entry is malformed
+     */
+    public static ReplacementPlan compile(Object rawReplacements, Path serverRoot) {
+        List<?> entries = asList(rawReplacements, "replacements");
+        List<PlannedReplacement> replacements = new ArrayList<>(entries.size());
+
+        for (int i = 0; i < entries.size(); i++) {
+            String location = "replacements[" + i + "]";
+            Map<?, ?> entry = asMap(entries.get(i), location);
+
+            if (entry.get("matrix") == null) {
+                replacements.add(compileEntry(entry, location, serverRoot));
+                continue;
+            }
+            Matrix matrix = Matrix.compile(entry.get("matrix"), entry, location);
+            if (matrix.isDiscovered()) {
+                // Validated now on a sample, so a broken entry fails the compilation rather than a later run
+                compileEntry(matrix.instantiate(matrix.sampleCombination()), location, serverRoot);
+                replacements.add(new PlannedReplacement(requireString(entry, "file", location), null, List.of(), null, matrix));
+                continue;
+            }
+            try {
+                for (Map<String, String> combination : matrix.combinations(serverRoot)) {
+                    replacements.add(compileEntry(matrix.instantiate(combination), location + Matrix.describe(combination), serverRoot));
+                }
+            } catch (IOException e) {
+                // Literal values never touch the disk
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        return new ReplacementPlan(replacements);
+    }
+
+    private static PlannedReplacement compileEntry(Map<?, ?> entry, String location, Path serverRoot) {
+        String file = requireString(entry, "file", location);
+        Path target = null;
+        if (!GlobExpander.isGlob(file)) {
+            if (!FileProcessorFactory.isSupported(file)) {
+                throw invalid(location + ".file", "no processor supports '" + file + "'");
+            }
+            target = serverRoot.resolve(file).toAbsolutePath().normalize();
+        }
+
+        Object changes = entry.get("changes");
+        if (changes == null) {
+            throw invalid(location + ".changes", "missing");
+        }
+        List<PlannedChange> compiled = compileChanges(changes, location + ".changes");
+        return new PlannedReplacement(file, target, compiled, compileCondition(entry, location));
+    }
+
+    /**
+     * Compiles a list of raw changes, each one a map with {@code path} and {@code value}.
+     *
+     * @throws IllegalArgumentException if a change is malformed
+     */
+    public static List<PlannedChange> compileChanges(Object rawChanges) {
+        return compileChanges(rawChanges, "changes");
+    }
+
+    private static List<PlannedChange> compileChanges(Object rawChanges, String location) {
+        List<?> entries = asList(rawChanges, location);
+        List<PlannedChange> changes = new ArrayList<>(entries.size());
+
+        for (int i = 0; i < entries.size(); i++) {
+            String changeLocation = location + "[" + i + "]";
+            Map<?, ?> entry = asMap(entries.get(i), changeLocation);
+
+            String path = requireString(entry, "path", changeLocation);
+            for (String key : path.split("\\.", -1)) {
+                if (key.isEmpty()) {
+                    throw invalid(changeLocation + ".path", "empty key in '" + path + "'");
+                }
+            }
+
+            Template value = Template.parse(requireScalar(entry, "value", changeLocation));
+            changes.add(new PlannedChange(path, value, compileCondition(entry, changeLocation)));
+        }
+
+        return changes;
+    }
+
+    /**
+     * @return the compiled {@code when} key of the entry, null if absent
+     */
+    private static Condition compileCondition(Map<?, ?> entry, String location) {
+        if (entry.get("when") == null) {
+            return null;
+        }
+        String source = requireScalar(entry, "when", location);
+        try {
+            return Condition.parse(source);
+        } catch (IllegalArgumentException e) {
+            throw invalid(location + ".when", e.getMessage());
+        }
+    }
+
+    private static List<?> asList(Object value, String location) {
+        if (!(value instanceof List)) {
+            throw invalid(location, "expected a list but found " + describe(value));
+        }
+        return (List<?>) value;
+    }
+
+    private static Map<?, ?> asMap(Object value, String location) {
+        if (!(value instanceof Map)) {
+            throw invalid(location, "expected a map but found " + describe(value));
+        }
+        return (Map<?, ?>) value;
+    }
+
+    private static String requireString(Map<?, ?> entry, String key, String location) {
+        Object value = entry.get(key);
+        if (value == null) {
+            throw invalid(location + "." + key, "missing");
+        }
+        if (!(value instanceof String) || ((String) value).isEmpty()) {
+            throw invalid(location + "." + key, "expected a non-empty string but found " + describe(value));
+        }
+        return (String) value;
+    }
+
+    /**
+     * Values written as YAML numbers or booleans are accepted as their textual form.
+     */
+    private static String requireScalar(Map<?, ?> entry, String key, String location) {
+        Object value = entry.get(key);
+        if (value == null) {
+            throw invalid(location + "." + key, "missing");
+        }
+        if (!(value instanceof String || value instanceof Number || value instanceof Boolean)) {
+            throw invalid(location + "." + key, "expected a scalar but found " + describe(value));
+        }
+        return value.toString();
+    }
+
+    private static String describe(Object value) {
+        if (value == null) {
+            return "nothing";
+        }
+        if (value instanceof String) {
+            return "'" + value + "'";
+        }
+        if (value instanceof List) {
+            return "a list";
+        }
+        if (value instanceof Map) {
+            return "a map";
+        }
+        return value.getClass().getSimpleName() + " " + value;
+    }
+
+    private static IllegalArgumentException invalid(String location, String reason) {
+        return new IllegalArgumentException("Invalid replacement at " + location + ": " + reason);
+    }
+}
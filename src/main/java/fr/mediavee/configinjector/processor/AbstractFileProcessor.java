@@ -2,15 +2,12 @@ package fr.mediavee.configinjector.processor;
 
 import fr.mediavee.configinjector.resolver.impl.SystemVariableResolver;
 import fr.mediavee.configinjector.resolver.VariableResolver;
+import fr.mediavee.configinjector.template.Template;
 
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public abstract class AbstractFileProcessor implements FileProcessor {
     
-    private static final Pattern ENV_VAR_PATTERN = Pattern.compile("\\$\\{([^}:]+)(?::([^}]*))?\\}");
-    
     protected String processEnvironmentVariables(String value) {
         return processEnvironmentVariables(value, null, new SystemVariableResolver());
     }
@@ -20,31 +17,23 @@ public abstract class AbstractFileProcessor implements FileProcessor {
     }
     
     protected String processEnvironmentVariables(String value, RequiredVariableValidator validator, VariableResolver resolver) {
+        return expandVariables(value, validator, resolver);
+    }
+    
+    /**
+     * Replaces every {@code ${VAR}} and {@code ${VAR:default}} placeholder of a value.
+     * Exposed so callers can resolve a change set without going through a processor.
+     */
+    public static String expandVariables(String value, RequiredVariableValidator validator, VariableResolver resolver) {
         if (value == null) return null;
         
-        Matcher matcher = ENV_VAR_PATTERN.matcher(value);
-        StringBuilder result = new StringBuilder();
-        
-        while (matcher.find()) {
-            String envVar = matcher.group(1);
-            String defaultValue = matcher.group(2);
-            
-            String envValue = resolver.getVariable(envVar);
-            
-            if (envValue == null) {
-                if (validator != null) {
-                    validator.checkRequired(envVar, defaultValue);
-                }
-                envValue = defaultValue != null ? defaultValue : "";
-            }
-            
-            matcher.appendReplacement(result, Matcher.quoteReplacement(envValue));
-        }
-        matcher.appendTail(result);
-        
-        return result.toString();
+        return Template.expand(value, validator, resolver);
     }
     
+    /**
+     * Collects required variables that could not be resolved.
+     * Safe to share between threads processing different files.
+     */
     public static class RequiredVariableValidator {
         private final boolean stopOnMissingRequired;
         private final List<String> missingVariables;
@@ -56,7 +45,9 @@ public abstract class AbstractFileProcessor implements FileProcessor {
         
         public void checkRequired(String varName, String defaultValue) {
             if (stopOnMissingRequired && defaultValue == null) {
-                missingVariables.add(varName);
+                synchronized (missingVariables) {
+                    missingVariables.add(varName);
+                }
             }
         }
     }
@@ -0,0 +1,22 @@
+package fr.mediavee.configinjector.processor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Where processors write the new content of a file.
+ */
+@FunctionalInterface
+public interface ContentWriter {
+
+    /**
+     * Writes the content straight to the file.
+     */
+    ContentWriter DIRECT = (file, previousContent, content) -> Files.write(file, content);
+
+    /**
+     * @param previousContent the content the new one was computed from, null if the file did not exist
+     */
+    void write(Path file, byte[] previousContent, byte[] content) throws IOException;
+}
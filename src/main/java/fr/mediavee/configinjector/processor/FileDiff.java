@@ -0,0 +1,80 @@
+package fr.mediavee.configinjector.processor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Values a dry run would change in a single file, keyed by path.
+ * When a path is set several times, the first old value and the last new value are kept.
+ * A change is sensitive when its value was read from the environment or the env file, which may hold secrets.
+ */
+public class FileDiff {
+
+    private final Map<String, Change> changes = new LinkedHashMap<>();
+
+    public void record(String path, String oldValue, String newValue) {
+        record(path, oldValue, newValue, false);
+    }
+
+    public void record(String path, String oldValue, String newValue, boolean sensitive) {
+        Change previous = changes.get(path);
+        if (previous == null) {
+            changes.put(path, new Change(path, oldValue, newValue, sensitive));
+        } else if (Objects.equals(previous.oldValue, newValue)) {
+            changes.remove(path);
+        } else {
+            changes.put(path, new Change(path, previous.oldValue, newValue, previous.sensitive || sensitive));
+        }
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    public List<Change> getChanges() {
+        return new ArrayList<>(changes.values());
+    }
+
+    public static class Change {
+        private final String path;
+        private final String oldValue;
+        private final String newValue;
+        private final boolean sensitive;
+
+        public Change(String path, String oldValue, String newValue) {
+            this(path, oldValue, newValue, false);
+        }
+
+        public Change(String path, String oldValue, String newValue, boolean sensitive) {
+            this.path = path;
+            this.oldValue = oldValue;
+            this.newValue = newValue;
+            this.sensitive = sensitive;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * @return the current value, or null if the path does not exist yet
+         */
+        public String getOldValue() {
+            return oldValue;
+        }
+
+        public String getNewValue() {
+            return newValue;
+        }
+
+        /**
+         * @return true if the new value was read from the environment or the env file, so neither value should be shown
+         */
+        public boolean isSensitive() {
+            return sensitive;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package fr.mediavee.configinjector.processor;
+
+/**
+ * Time spent in each processing phase of a single file, plus the bytes read and written.
+ * A metrics instance belongs to one file and is only updated by the thread processing it.
+ */
+public class FileMetrics {
+
+    public enum Phase {
+        RESOLVE, READ, PARSE, MUTATE, SERIALIZE, WRITE
+    }
+
+    private final long[] nanos = new long[Phase.values().length];
+    private long bytesIn;
+    private long bytesOut;
+
+    public void add(Phase phase, long elapsedNanos) {
+        nanos[phase.ordinal()] += elapsedNanos;
+    }
+
+    public long getNanos(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    public long getTotalNanos() {
+        long total = 0;
+        for (long value : nanos) {
+            total += value;
+        }
+        return total;
+    }
+
+    public void addBytesIn(long bytes) {
+        bytesIn += bytes;
+    }
+
+    public void addBytesOut(long bytes) {
+        bytesOut += bytes;
+    }
+
+    public long getBytesIn() {
+        return bytesIn;
+    }
+
+    public long getBytesOut() {
+        return bytesOut;
+    }
+}
@@ -1,10 +1,12 @@
 package fr.mediavee.configinjector.processor;
 
+import fr.mediavee.configinjector.plan.PlannedChange;
 import fr.mediavee.configinjector.resolver.VariableResolver;
 import fr.mediavee.configinjector.processor.AbstractFileProcessor.RequiredVariableValidator;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -22,5 +24,30 @@ public interface FileProcessor {
         return processFile(filePath, changes, validator);
     }
     
+    default boolean process(Path filePath, List<Map<String, Object>> changes, ProcessingContext context) throws IOException {
+        return processFile(filePath, changes, context.getValidator(), context.getResolver());
+    }
+    
+    /**
+     * Applies compiled changes. Processors that only understand raw changes receive them as maps again.
+     */
+    default boolean applyChanges(Path filePath, List<PlannedChange> changes, ProcessingContext context) throws IOException {
+        List<Map<String, Object>> rawChanges = new ArrayList<>(changes.size());
+        for (PlannedChange change : changes) {
+            rawChanges.add(Map.of("path", change.getPath(), "value", change.getValue().getSource()));
+        }
+        return process(filePath, rawChanges, context);
+    }
+    
+    /**
+     * Estimates the heap needed to process a file, used to bound how many large files run at once.
+     * 
+     * @param fileSize the size of the file on disk, in bytes
+     * @return the estimated memory, in bytes
+     */
+    default long estimateHeapUsage(long fileSize) {
+        return fileSize * 4;
+    }
+    
     String getFormat();
 }
\ No newline at end of file
@@ -16,6 +16,15 @@ public class FileProcessorFactory {
         new TomlFileProcessor()
     );
     
+    public static boolean isSupported(String fileName) {
+        for (FileProcessor processor : PROCESSORS) {
+            if (processor.canProcess(fileName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
     public static FileProcessor getProcessor(String fileName) {
         if (fileName == null) {
             throw new IllegalArgumentException("File name cannot be null");
@@ -0,0 +1,67 @@
+package fr.mediavee.configinjector.processor;
+
+import fr.mediavee.configinjector.processor.AbstractFileProcessor.RequiredVariableValidator;
+import fr.mediavee.configinjector.resolver.VariableResolver;
+import fr.mediavee.configinjector.resolver.impl.SystemVariableResolver;
+
+/**
+ * Everything a processor needs besides the file and its changes.
+ */
+public class ProcessingContext {
+
+    private final RequiredVariableValidator validator;
+    private final VariableResolver resolver;
+    private final FileMetrics metrics;
+    private final FileDiff diff;
+    private final ContentWriter writer;
+
+    public ProcessingContext(RequiredVariableValidator validator, VariableResolver resolver) {
+        this(validator, resolver, new FileMetrics());
+    }
+
+    public ProcessingContext(RequiredVariableValidator validator, VariableResolver resolver, FileMetrics metrics) {
+        this(validator, resolver, metrics, null);
+    }
+
+    /**
+     * @param diff when not null, the file is processed as a dry run: changes are recorded in it and nothing is written
+     */
+    public ProcessingContext(RequiredVariableValidator validator, VariableResolver resolver, FileMetrics metrics, FileDiff diff) {
+        this(validator, resolver, metrics, diff, null);
+    }
+
+    /**
+     * @param writer where the new content of modified files goes, null to write it straight to the file
+     */
+    public ProcessingContext(RequiredVariableValidator validator, VariableResolver resolver, FileMetrics metrics, FileDiff diff, ContentWriter writer) {
+        this.validator = validator;
+        this.resolver = resolver != null ? resolver : new SystemVariableResolver();
+        this.metrics = metrics != null ? metrics : new FileMetrics();
+        this.diff = diff;
+        this.writer = writer != null ? writer : ContentWriter.DIRECT;
+    }
+
+    public RequiredVariableValidator getValidator() {
+        return validator;
+    }
+
+    public VariableResolver getResolver() {
+        return resolver;
+    }
+
+    public FileMetrics getMetrics() {
+        return metrics;
+    }
+
+    public FileDiff getDiff() {
+        return diff;
+    }
+
+    public ContentWriter getWriter() {
+        return writer;
+    }
+
+    public boolean isDryRun() {
+        return diff != null;
+    }
+}
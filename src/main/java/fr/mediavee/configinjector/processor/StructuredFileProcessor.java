@@ -0,0 +1,156 @@
+package fr.mediavee.configinjector.processor;
+
+import fr.mediavee.configinjector.plan.PlannedChange;
+import fr.mediavee.configinjector.plan.ReplacementPlan;
+import fr.mediavee.configinjector.processor.FileMetrics.Phase;
+import fr.mediavee.configinjector.resolver.VariableResolver;
+import fr.mediavee.configinjector.resolver.impl.SystemVariableResolver;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Base class for processors that load a whole document in memory, mutate it and write it back.
+ * The processing is split into read, parse, resolve, mutate, serialize and write phases,
+ * each of them timed in the {@link FileMetrics} of the context.
+ * In a dry run the mutated tree is only compared, never serialized or written.
+ * Outside of dry runs, a file whose serialized content is byte for byte the current one is not written.
+ *
+ * @param <D> the in-memory representation of a document
+ */
+public abstract class StructuredFileProcessor<D> extends AbstractFileProcessor {
+
+    /**
+     * Parses the raw content of an existing file.
+     */
+    protected abstract D parse(byte[] content) throws IOException;
+
+    /**
+     * Creates the document used when the target file does not exist.
+     */
+    protected abstract D createEmpty();
+
+    /**
+     * Reads the current value at a path, used to describe changes in dry runs.
+     *
+     * @return the value, or null if the path does not exist
+     */
+    protected abstract Object getValue(D document, PlannedChange change);
+
+    /**
+     * Sets a value in the document.
+     *
+     * @return true if the value differs from the previous one
+     */
+    protected abstract boolean setValue(D document, PlannedChange change, String value);
+
+    protected abstract byte[] serialize(D document) throws IOException;
+
+    @Override
+    public boolean processFile(Path filePath, List<Map<String, Object>> changes) throws IOException {
+        return processFile(filePath, changes, null);
+    }
+
+    @Override
+    public boolean processFile(Path filePath, List<Map<String, Object>> changes, RequiredVariableValidator validator) throws IOException {
+        return processFile(filePath, changes, validator, new SystemVariableResolver());
+    }
+
+    @Override
+    public boolean processFile(Path filePath, List<Map<String, Object>> changes, RequiredVariableValidator validator, VariableResolver resolver) throws IOException {
+        return process(filePath, changes, new ProcessingContext(validator, resolver));
+    }
+
+    @Override
+    public boolean process(Path filePath, List<Map<String, Object>> changes, ProcessingContext context) throws IOException {
+        return applyChanges(filePath, ReplacementPlan.compileChanges(changes), context);
+    }
+
+    @Override
+    public boolean applyChanges(Path filePath, List<PlannedChange> changes, ProcessingContext context) throws IOException {
+        FileMetrics metrics = context.getMetrics();
+        long start = System.nanoTime();
+
+        byte[] content = null;
+        if (Files.exists(filePath)) {
+            content = Files.readAllBytes(filePath);
+            metrics.addBytesIn(content.length);
+        }
+        lap(metrics, Phase.READ, start);
+
+        byte[] output = transform(content, changes, context);
+        if (context.isDryRun()) {
+            return !context.getDiff().isEmpty();
+        }
+
+        if (output != null) {
+            start = System.nanoTime();
+            context.getWriter().write(filePath, content, output);
+            lap(metrics, Phase.WRITE, start);
+        }
+
+        return output != null;
+    }
+
+    /**
+     * Applies changes to a document held in memory, without touching the file system.
+     *
+     * @param content the current content, null to start from an empty document
+     * @return the new content, or null if it is identical to the current one or the context is a dry run
+     */
+    public byte[] transform(byte[] content, List<PlannedChange> changes, ProcessingContext context) throws IOException {
+        FileMetrics metrics = context.getMetrics();
+        long start = System.nanoTime();
+
+        D document = content != null ? parse(content) : null;
+        if (document == null) {
+            document = createEmpty();
+        }
+        start = lap(metrics, Phase.PARSE, start);
+
+        String[] values = new String[changes.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = changes.get(i).getValue().render(context.getValidator(), context.getResolver());
+        }
+        start = lap(metrics, Phase.RESOLVE, start);
+
+        FileDiff diff = context.getDiff();
+        boolean modified = false;
+        for (int i = 0; i < values.length; i++) {
+            PlannedChange change = changes.get(i);
+            Object oldValue = diff != null ? getValue(document, change) : null;
+            if (setValue(document, change, values[i])) {
+                modified = true;
+                if (diff != null) {
+                    diff.record(change.getPath(), oldValue != null ? oldValue.toString() : null, values[i], change.getValue().readsEnvironment());
+                }
+            }
+        }
+        start = lap(metrics, Phase.MUTATE, start);
+
+        if (diff != null || !modified) {
+            return null;
+        }
+
+        byte[] output = serialize(document);
+        lap(metrics, Phase.SERIALIZE, start);
+
+        // A value can differ in the tree and still serialize to the bytes already on disk,
+        // rewriting the file would only bump its modification time and wake up file watchers
+        if (content != null && Arrays.equals(content, output)) {
+            return null;
+        }
+        metrics.addBytesOut(output.length);
+        return output;
+    }
+
+    private static long lap(FileMetrics metrics, Phase phase, long start) {
+        long now = System.nanoTime();
+        metrics.add(phase, now - start);
+        return now;
+    }
+}
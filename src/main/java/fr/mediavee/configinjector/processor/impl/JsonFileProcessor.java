@@ -1,21 +1,17 @@
 package fr.mediavee.configinjector.processor.impl;
 
 import com.google.gson.*;
-import fr.mediavee.configinjector.resolver.impl.SystemVariableResolver;
-import fr.mediavee.configinjector.resolver.VariableResolver;
-import fr.mediavee.configinjector.processor.AbstractFileProcessor;
+import fr.mediavee.configinjector.plan.PlannedChange;
+import fr.mediavee.configinjector.processor.StructuredFileProcessor;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.Reader;
-import java.io.Writer;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
-import java.util.Map;
 
-public class JsonFileProcessor extends AbstractFileProcessor {
-    
-    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+public class JsonFileProcessor extends StructuredFileProcessor<JsonObject> {
     
     @Override
     public boolean canProcess(String fileName) {
@@ -28,55 +24,50 @@ public class JsonFileProcessor extends AbstractFileProcessor {
     }
     
     @Override
-    public boolean processFile(Path filePath, List<Map<String, Object>> changes) throws IOException {
-        return processFile(filePath, changes, null);
+    public long estimateHeapUsage(long fileSize) {
+        // The JsonObject tree plus the pretty printed String
+        return fileSize * 8;
     }
     
     @Override
-    public boolean processFile(Path filePath, List<Map<String, Object>> changes, RequiredVariableValidator validator) throws IOException {
-        return processFile(filePath, changes, validator, new SystemVariableResolver());
+    protected JsonObject parse(byte[] content) throws IOException {
+        try (Reader reader = new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8)) {
+            return JsonParser.parseReader(reader).getAsJsonObject();
+        }
     }
     
     @Override
-    public boolean processFile(Path filePath, List<Map<String, Object>> changes, RequiredVariableValidator validator, VariableResolver resolver) throws IOException {
-        JsonObject data;
-        
-        if (Files.exists(filePath)) {
-            try (Reader reader = Files.newBufferedReader(filePath)) {
-                JsonParser parser = new JsonParser();
-                data = parser.parse(reader).getAsJsonObject();
-            }
-        } else {
-            data = new JsonObject();
-        }
-        
-        boolean modified = false;
-        for (Map<String, Object> change : changes) {
-            String path = (String) change.get("path");
-            String value = (String) change.get("value");
-            
-            String processedValue = processEnvironmentVariables(value, validator, resolver);
-            
-            if (setNestedValue(data, path, processedValue)) {
-                modified = true;
+    protected JsonObject createEmpty() {
+        return new JsonObject();
+    }
+    
+    @Override
+    protected byte[] serialize(JsonObject data) {
+        return GsonHolder.GSON.toJson(data).getBytes(StandardCharsets.UTF_8);
+    }
+    
+    @Override
+    protected Object getValue(JsonObject data, PlannedChange change) {
+        JsonElement current = data;
+        for (String key : change.getKeys()) {
+            if (current == null || !current.isJsonObject()) {
+                return null;
             }
+            current = current.getAsJsonObject().get(key);
         }
-        
-        if (modified) {
-            try (Writer writer = Files.newBufferedWriter(filePath)) {
-                gson.toJson(data, writer);
-            }
+        if (current == null || current.isJsonNull()) {
+            return null;
         }
-        
-        return modified;
+        return current.isJsonPrimitive() ? current.getAsString() : current.toString();
     }
     
-    private boolean setNestedValue(JsonObject data, String path, String value) {
-        String[] keys = path.split("\\.");
+    @Override
+    protected boolean setValue(JsonObject data, PlannedChange change, String value) {
+        List<String> keys = change.getKeys();
         JsonObject current = data;
         
-        for (int i = 0; i < keys.length - 1; i++) {
-            String key = keys[i];
+        for (int i = 0; i < keys.size() - 1; i++) {
+            String key = keys.get(i);
             JsonElement element = current.get(key);
             
             if (element != null && element.isJsonObject()) {
@@ -88,7 +79,7 @@ public class JsonFileProcessor extends AbstractFileProcessor {
             }
         }
         
-        String finalKey = keys[keys.length - 1];
+        String finalKey = keys.get(keys.size() - 1);
         JsonElement oldValue = current.get(finalKey);
         JsonElement newValue = new JsonPrimitive(value);
         
@@ -96,4 +87,10 @@ public class JsonFileProcessor extends AbstractFileProcessor {
         return !newValue.equals(oldValue);
     }
     
+    /**
+     * Defers loading Gson until a JSON file is actually written.
+     */
+    private static class GsonHolder {
+        private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    }
 }
\ No newline at end of file
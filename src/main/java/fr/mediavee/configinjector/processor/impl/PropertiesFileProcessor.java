@@ -1,19 +1,15 @@
 package fr.mediavee.configinjector.processor.impl;
 
-import fr.mediavee.configinjector.resolver.impl.SystemVariableResolver;
-import fr.mediavee.configinjector.resolver.VariableResolver;
-import fr.mediavee.configinjector.processor.AbstractFileProcessor;
+import fr.mediavee.configinjector.plan.PlannedChange;
+import fr.mediavee.configinjector.processor.StructuredFileProcessor;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.util.List;
-import java.util.Map;
 import java.util.Properties;
 
-public class PropertiesFileProcessor extends AbstractFileProcessor {
+public class PropertiesFileProcessor extends StructuredFileProcessor<Properties> {
     
     @Override
     public boolean canProcess(String fileName) {
@@ -26,45 +22,40 @@ public class PropertiesFileProcessor extends AbstractFileProcessor {
     }
     
     @Override
-    public boolean processFile(Path filePath, List<Map<String, Object>> changes) throws IOException {
-        return processFile(filePath, changes, null);
+    protected Properties parse(byte[] content) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream input = new ByteArrayInputStream(content)) {
+            properties.load(input);
+        }
+        return properties;
     }
     
     @Override
-    public boolean processFile(Path filePath, List<Map<String, Object>> changes, RequiredVariableValidator validator) throws IOException {
-        return processFile(filePath, changes, validator, new SystemVariableResolver());
+    protected Properties createEmpty() {
+        return new Properties();
     }
     
     @Override
-    public boolean processFile(Path filePath, List<Map<String, Object>> changes, RequiredVariableValidator validator, VariableResolver resolver) throws IOException {
-        Properties properties = new Properties();
-        
-        if (Files.exists(filePath)) {
-            try (InputStream input = Files.newInputStream(filePath)) {
-                properties.load(input);
-            }
-        }
-        
-        boolean modified = false;
-        for (Map<String, Object> change : changes) {
-            String path = (String) change.get("path");
-            String value = (String) change.get("value");
-            
-            String processedValue = processEnvironmentVariables(value, validator, resolver);
-            String oldValue = properties.getProperty(path);
-            
-            if (!processedValue.equals(oldValue)) {
-                properties.setProperty(path, processedValue);
-                modified = true;
-            }
-        }
+    protected byte[] serialize(Properties properties) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        properties.store(output, null);
+        return output.toByteArray();
+    }
+    
+    @Override
+    protected Object getValue(Properties properties, PlannedChange change) {
+        return properties.getProperty(change.getPath());
+    }
+    
+    @Override
+    protected boolean setValue(Properties properties, PlannedChange change, String value) {
+        String path = change.getPath();
+        String oldValue = properties.getProperty(path);
         
-        if (modified) {
-            try (OutputStream output = Files.newOutputStream(filePath)) {
-                properties.store(output, null);
-            }
+        if (!value.equals(oldValue)) {
+            properties.setProperty(path, value);
+            return true;
         }
-        
-        return modified;
+        return false;
     }
-}
\ No newline at end of file
+}
@@ -2,18 +2,16 @@ package fr.mediavee.configinjector.processor.impl;
 
 import com.moandjiezana.toml.Toml;
 import com.moandjiezana.toml.TomlWriter;
-import fr.mediavee.configinjector.resolver.impl.SystemVariableResolver;
-import fr.mediavee.configinjector.resolver.VariableResolver;
-import fr.mediavee.configinjector.processor.AbstractFileProcessor;
+import fr.mediavee.configinjector.plan.PlannedChange;
+import fr.mediavee.configinjector.processor.StructuredFileProcessor;
 
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-public class TomlFileProcessor extends AbstractFileProcessor {
+public class TomlFileProcessor extends StructuredFileProcessor<Map<String, Object>> {
     
     @Override
     public boolean canProcess(String fileName) {
@@ -26,53 +24,49 @@ public class TomlFileProcessor extends AbstractFileProcessor {
     }
     
     @Override
-    public boolean processFile(Path filePath, List<Map<String, Object>> changes) throws IOException {
-        return processFile(filePath, changes, null);
+    public long estimateHeapUsage(long fileSize) {
+        // toml4j keeps its parsed tables along with the map view
+        return fileSize * 10;
     }
     
     @Override
-    public boolean processFile(Path filePath, List<Map<String, Object>> changes, RequiredVariableValidator validator) throws IOException {
-        return processFile(filePath, changes, validator, new SystemVariableResolver());
+    protected Map<String, Object> parse(byte[] content) {
+        Toml toml = new Toml().read(new ByteArrayInputStream(content));
+        return toml.toMap();
     }
     
     @Override
-    public boolean processFile(Path filePath, List<Map<String, Object>> changes, RequiredVariableValidator validator, VariableResolver resolver) throws IOException {
-        Map<String, Object> data;
-        
-        if (Files.exists(filePath)) {
-            Toml toml = new Toml().read(filePath.toFile());
-            data = toml.toMap();
-        } else {
-            data = new HashMap<>();
-        }
-        
-        boolean modified = false;
-        for (Map<String, Object> change : changes) {
-            String path = (String) change.get("path");
-            String value = (String) change.get("value");
-            
-            String processedValue = processEnvironmentVariables(value, validator, resolver);
-            
-            if (setNestedValue(data, path, processedValue)) {
-                modified = true;
+    protected Map<String, Object> createEmpty() {
+        return new HashMap<>();
+    }
+    
+    @Override
+    protected byte[] serialize(Map<String, Object> data) {
+        TomlWriter writer = new TomlWriter();
+        return writer.write(data).getBytes(StandardCharsets.UTF_8);
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    protected Object getValue(Map<String, Object> data, PlannedChange change) {
+        Object current = data;
+        for (String key : change.getKeys()) {
+            if (!(current instanceof Map)) {
+                return null;
             }
+            current = ((Map<String, Object>) current).get(key);
         }
-        
-        if (modified) {
-            TomlWriter writer = new TomlWriter();
-            writer.write(data, filePath.toFile());
-        }
-        
-        return modified;
+        return current;
     }
     
+    @Override
     @SuppressWarnings("unchecked")
-    private boolean setNestedValue(Map<String, Object> data, String path, String value) {
-        String[] keys = path.split("\\.");
+    protected boolean setValue(Map<String, Object> data, PlannedChange change, String value) {
+        List<String> keys = change.getKeys();
         Map<String, Object> current = data;
         
-        for (int i = 0; i < keys.length - 1; i++) {
-            String key = keys[i];
+        for (int i = 0; i < keys.size() - 1; i++) {
+            String key = keys.get(i);
             Object next = current.get(key);
             
             if (next instanceof Map) {
@@ -84,10 +78,10 @@ public class TomlFileProcessor extends AbstractFileProcessor {
             }
         }
         
-        String finalKey = keys[keys.length - 1];
+        String finalKey = keys.get(keys.size() - 1);
         Object oldValue = current.get(finalKey);
         
         current.put(finalKey, value);
         return !value.equals(oldValue);
     }
-}
\ No newline at end of file
+}
@@ -1,21 +1,19 @@
 package fr.mediavee.configinjector.processor.impl;
 
-import fr.mediavee.configinjector.resolver.impl.SystemVariableResolver;
-import fr.mediavee.configinjector.resolver.VariableResolver;
-import fr.mediavee.configinjector.processor.AbstractFileProcessor;
+import fr.mediavee.configinjector.plan.PlannedChange;
+import fr.mediavee.configinjector.processor.StructuredFileProcessor;
 import org.yaml.snakeyaml.DumperOptions;
 import org.yaml.snakeyaml.Yaml;
 
-import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-public class YamlFileProcessor extends AbstractFileProcessor {
+public class YamlFileProcessor extends StructuredFileProcessor<Map<String, Object>> {
     
     @Override
     public boolean canProcess(String fileName) {
@@ -28,65 +26,55 @@ public class YamlFileProcessor extends AbstractFileProcessor {
     }
     
     @Override
-    public boolean processFile(Path filePath, List<Map<String, Object>> changes) throws IOException {
-        return processFile(filePath, changes, null);
+    public long estimateHeapUsage(long fileSize) {
+        // SnakeYAML builds a node graph then plain maps, and dumps to a String
+        return fileSize * 12;
     }
     
     @Override
-    public boolean processFile(Path filePath, List<Map<String, Object>> changes, RequiredVariableValidator validator) throws IOException {
-        return processFile(filePath, changes, validator, new SystemVariableResolver());
+    protected Map<String, Object> parse(byte[] content) throws IOException {
+        Yaml yaml = new Yaml();
+        try (InputStream input = new ByteArrayInputStream(content)) {
+            return yaml.load(input);
+        }
     }
     
     @Override
-    public boolean processFile(Path filePath, List<Map<String, Object>> changes, RequiredVariableValidator validator, VariableResolver resolver) throws IOException {
-        Yaml yaml = new Yaml();
-        Map<String, Object> data;
-        
-        if (Files.exists(filePath)) {
-            try (InputStream input = Files.newInputStream(filePath)) {
-                data = yaml.load(input);
-            }
-        } else {
-            data = new HashMap<>();
-        }
-        
-        if (data == null) {
-            data = new HashMap<>();
-        }
-        
-        boolean modified = false;
-        for (Map<String, Object> change : changes) {
-            String path = (String) change.get("path");
-            String value = (String) change.get("value");
-            
-            String processedValue = processEnvironmentVariables(value, validator, resolver);
-            
-            if (setNestedValue(data, path, processedValue)) {
-                modified = true;
-            }
-        }
+    protected Map<String, Object> createEmpty() {
+        return new HashMap<>();
+    }
+    
+    @Override
+    protected byte[] serialize(Map<String, Object> data) {
+        DumperOptions options = new DumperOptions();
+        options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+        options.setPrettyFlow(true);
+        Yaml outputYaml = new Yaml(options);
         
-        if (modified) {
-            DumperOptions options = new DumperOptions();
-            options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
-            options.setPrettyFlow(true);
-            Yaml outputYaml = new Yaml(options);
-            
-            try (BufferedWriter writer = Files.newBufferedWriter(filePath)) {
-                outputYaml.dump(data, writer);
+        return outputYaml.dump(data).getBytes(StandardCharsets.UTF_8);
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    protected Object getValue(Map<String, Object> data, PlannedChange change) {
+        Object current = data;
+        for (String key : change.getKeys()) {
+            if (!(current instanceof Map)) {
+                return null;
             }
+            current = ((Map<String, Object>) current).get(key);
         }
-        
-        return modified;
+        return current;
     }
     
+    @Override
     @SuppressWarnings("unchecked")
-    private boolean setNestedValue(Map<String, Object> data, String path, String value) {
-        String[] keys = path.split("\\.");
+    protected boolean setValue(Map<String, Object> data, PlannedChange change, String value) {
+        List<String> keys = change.getKeys();
         Map<String, Object> current = data;
         
-        for (int i = 0; i < keys.length - 1; i++) {
-            String key = keys[i];
+        for (int i = 0; i < keys.size() - 1; i++) {
+            String key = keys.get(i);
             Object next = current.get(key);
             
             if (next instanceof Map) {
@@ -98,10 +86,10 @@ public class YamlFileProcessor extends AbstractFileProcessor {
             }
         }
         
-        String finalKey = keys[keys.length - 1];
+        String finalKey = keys.get(keys.size() - 1);
         Object oldValue = current.get(finalKey);
         
         current.put(finalKey, value);
         return !value.equals(oldValue);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,70 @@
+package fr.mediavee.configinjector.resolver;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The prefixes of {@code ${prefix:NAME}} placeholders, which read a variable from a single source instead of
+ * trying every source in order. {@code env} reads the system environment, {@code dotenv} the env file and
+ * {@code sys} the JVM system properties; other plugins may register their own prefixes.
+ * Whether {@code ${prefix:NAME}} is namespaced is decided when a template is compiled: with an unknown prefix it
+ * reads as the variable {@code prefix} with the default {@code NAME}. Registering or unregistering a prefix bumps
+ * {@link #getVersion()}, which the plan cache and the template service compare to drop what they compiled before.
+ */
+public final class VariableNamespaces {
+
+    public static final String ENV = "env";
+    public static final String DOTENV = "dotenv";
+    public static final String SYSTEM_PROPERTIES = "sys";
+    public static final char SEPARATOR = ':';
+
+    private static final Set<String> BUILT_IN = Set.of(ENV, DOTENV, SYSTEM_PROPERTIES);
+    private static final Map<String, VariableResolver> REGISTERED = new ConcurrentHashMap<>();
+    private static final AtomicInteger VERSION = new AtomicInteger();
+
+    private VariableNamespaces() {
+    }
+
+    /**
+     * @param prefix lower case letters, digits and '-', starting with a letter
+     * @throws IllegalArgumentException if the prefix is malformed or built in
+     */
+    public static void register(String prefix, VariableResolver resolver) {
+        if (prefix == null || !prefix.matches("[a-z][a-z0-9-]*")) {
+            throw new IllegalArgumentException("Invalid namespace prefix: " + prefix + " (expected lower case letters, digits and '-')");
+        }
+        if (BUILT_IN.contains(prefix)) {
+            throw new IllegalArgumentException("Namespace prefix " + prefix + " is built in");
+        }
+        if (REGISTERED.put(prefix, resolver) == null) {
+            VERSION.incrementAndGet();
+        }
+    }
+
+    public static void unregister(String prefix) {
+        if (REGISTERED.remove(prefix) != null) {
+            VERSION.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return a number changing whenever a prefix is registered or unregistered, so templates compiled earlier may
+     * read {@code ${prefix:NAME}} differently than they would now
+     */
+    public static int getVersion() {
+        return VERSION.get();
+    }
+
+    public static boolean isNamespace(String prefix) {
+        return BUILT_IN.contains(prefix) || REGISTERED.containsKey(prefix);
+    }
+
+    /**
+     * @return the resolver registered for a prefix, null for a built-in or unknown prefix
+     */
+    public static VariableResolver getRegistered(String prefix) {
+        return REGISTERED.get(prefix);
+    }
+}
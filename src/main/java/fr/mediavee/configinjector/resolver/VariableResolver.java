@@ -1,5 +1,9 @@
 package fr.mediavee.configinjector.resolver;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * Interface for resolving environment variables from various sources.
  */
@@ -12,4 +16,22 @@ public interface VariableResolver {
      * @return the value of the variable, or null if not found
      */
     String getVariable(String varName);
+    
+    /**
+     * Resolves several variables at once. Resolvers backed by a remote or slow source should
+     * override this to fetch every name in a single round trip.
+     * 
+     * @param varNames the names of the variables to resolve
+     * @return the values of the variables that were found, keyed by name
+     */
+    default Map<String, String> getVariables(Set<String> varNames) {
+        Map<String, String> values = new HashMap<>();
+        for (String varName : varNames) {
+            String value = getVariable(varName);
+            if (value != null) {
+                values.put(varName, value);
+            }
+        }
+        return values;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,57 @@
+package fr.mediavee.configinjector.resolver.impl;
+
+import fr.mediavee.configinjector.resolver.VariableResolver;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Variable resolver that remembers the values, and the absence of values, returned by another resolver.
+ * Meant to be shared between runs that resolve the same variables, each name reaches the delegate at most
+ * once per concurrent miss. Safe to use from several threads.
+ */
+public class CachingVariableResolver implements VariableResolver {
+    
+    private final VariableResolver delegate;
+    private final Map<String, Optional<String>> cache = new ConcurrentHashMap<>();
+    
+    public CachingVariableResolver(VariableResolver delegate) {
+        this.delegate = delegate;
+    }
+    
+    @Override
+    public String getVariable(String varName) {
+        return cache.computeIfAbsent(varName, name -> Optional.ofNullable(delegate.getVariable(name))).orElse(null);
+    }
+    
+    @Override
+    public Map<String, String> getVariables(Set<String> varNames) {
+        Map<String, String> values = new HashMap<>();
+        Set<String> uncached = new HashSet<>();
+        
+        for (String varName : varNames) {
+            Optional<String> cached = cache.get(varName);
+            if (cached == null) {
+                uncached.add(varName);
+            } else {
+                cached.ifPresent(value -> values.put(varName, value));
+            }
+        }
+        
+        if (!uncached.isEmpty()) {
+            Map<String, String> found = delegate.getVariables(uncached);
+            for (String varName : uncached) {
+                String value = found.get(varName);
+                cache.putIfAbsent(varName, Optional.ofNullable(value));
+                if (value != null) {
+                    values.put(varName, value);
+                }
+            }
+        }
+        return values;
+    }
+}
@@ -3,18 +3,24 @@ package fr.mediavee.configinjector.resolver.impl;
 import fr.mediavee.configinjector.resolver.VariableResolver;
 
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Variable resolver that combines multiple resolvers with priority order.
  * Resolvers are checked in the order they are provided.
+ * 
+ * <p>Bulk lookups ask each resolver only for the names still unresolved by the previous ones.</p>
  */
 public class CompositeVariableResolver implements VariableResolver {
     
     private final List<VariableResolver> resolvers;
     
     public CompositeVariableResolver(VariableResolver... resolvers) {
-        this.resolvers = Arrays.asList(resolvers);
+        this(Arrays.asList(resolvers));
     }
     
     public CompositeVariableResolver(List<VariableResolver> resolvers) {
@@ -31,4 +37,20 @@ public class CompositeVariableResolver implements VariableResolver {
         }
         return null;
     }
-}
\ No newline at end of file
+    
+    @Override
+    public Map<String, String> getVariables(Set<String> varNames) {
+        Map<String, String> values = new HashMap<>();
+        Set<String> remaining = new LinkedHashSet<>(varNames);
+        
+        for (VariableResolver resolver : resolvers) {
+            if (remaining.isEmpty()) {
+                break;
+            }
+            Map<String, String> found = resolver.getVariables(Set.copyOf(remaining));
+            values.putAll(found);
+            remaining.removeAll(found.keySet());
+        }
+        return values;
+    }
+}
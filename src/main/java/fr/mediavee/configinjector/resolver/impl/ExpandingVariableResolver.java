@@ -0,0 +1,122 @@
+package fr.mediavee.configinjector.resolver.impl;
+
+import fr.mediavee.configinjector.exception.VariableExpansionException;
+import fr.mediavee.configinjector.processor.AbstractFileProcessor.RequiredVariableValidator;
+import fr.mediavee.configinjector.resolver.VariableResolver;
+import fr.mediavee.configinjector.template.Template;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Variable resolver expanding the placeholders found in the values of another resolver, so a value
+ * such as {@code jdbc:mysql://${DB_HOST:localhost}:3306} can be built from other variables.
+ * Every variable is expanded once and remembered, so a resolver is meant to live for one run.
+ * A variable whose expansion reaches itself again, or goes deeper than {@value #MAX_DEPTH} variables,
+ * fails with the chain of variables involved. The unset variables without a default referenced by expanded values
+ * are collected, see {@link #getMissingVariables()}. Safe to use from several threads.
+ */
+public class ExpandingVariableResolver implements VariableResolver {
+
+    public static final int MAX_DEPTH = 16;
+
+    private final VariableResolver delegate;
+    private final Map<String, String> expanded = new ConcurrentHashMap<>();
+    private final List<String> missing = new ArrayList<>();
+    private final RequiredVariableValidator validator = new RequiredVariableValidator(true, missing);
+
+    public ExpandingVariableResolver(VariableResolver delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Looks up variables along with the ones their values reference, one bulk lookup per level of nesting.
+     *
+     * @return the raw values found, to be expanded by a resolver over them
+     */
+    public static Map<String, String> lookup(VariableResolver resolver, Set<String> names) {
+        Map<String, String> values = new HashMap<>(resolver.getVariables(names));
+        Set<String> requested = new HashSet<>(names);
+        Set<String> pending = referencedNames(values.values(), requested);
+
+        for (int depth = 0; !pending.isEmpty() && depth < MAX_DEPTH; depth++) {
+            requested.addAll(pending);
+            Map<String, String> found = resolver.getVariables(pending);
+            values.putAll(found);
+            pending = referencedNames(found.values(), requested);
+        }
+        return values;
+    }
+
+    /**
+     * @throws VariableExpansionException if the value references itself or is nested too deep
+     */
+    @Override
+    public String getVariable(String varName) {
+        return expand(varName, new ArrayDeque<>());
+    }
+
+    private String expand(String name, Deque<String> chain) {
+        String value = expanded.get(name);
+        if (value != null) {
+            return value;
+        }
+
+        if (chain.contains(name)) {
+            List<String> cycle = new ArrayList<>(chain);
+            cycle.add(name);
+            throw new VariableExpansionException("Variable references itself", cycle.subList(cycle.indexOf(name), cycle.size()));
+        }
+        if (chain.size() >= MAX_DEPTH) {
+            List<String> path = new ArrayList<>(chain);
+            path.add(name);
+            throw new VariableExpansionException("Variables nested more than " + MAX_DEPTH + " levels deep", path);
+        }
+
+        String raw = delegate.getVariable(name);
+        if (raw == null) {
+            return null;
+        }
+        if (raw.indexOf("${") >= 0) {
+            chain.addLast(name);
+            try {
+                raw = Template.expand(raw, validator, reference -> expand(reference, chain));
+            } finally {
+                chain.removeLast();
+            }
+        }
+        expanded.putIfAbsent(name, raw);
+        return raw;
+    }
+
+    /**
+     * @return the unset variables without a default referenced by the values expanded so far, in order of first encounter
+     */
+    public List<String> getMissingVariables() {
+        synchronized (missing) {
+            return new ArrayList<>(new LinkedHashSet<>(missing));
+        }
+    }
+
+    private static Set<String> referencedNames(Iterable<String> values, Set<String> known) {
+        Set<String> names = new LinkedHashSet<>();
+        for (String value : values) {
+            if (value.indexOf("${") >= 0) {
+                for (String name : Template.parse(value).getVariableNames()) {
+                    if (!known.contains(name)) {
+                        names.add(name);
+                    }
+                }
+            }
+        }
+        return names;
+    }
+}
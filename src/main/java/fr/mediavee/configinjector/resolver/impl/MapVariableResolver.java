@@ -0,0 +1,36 @@
+package fr.mediavee.configinjector.resolver.impl;
+
+import fr.mediavee.configinjector.resolver.VariableResolver;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Variable resolver backed by a fixed set of values, such as the result of a bulk lookup.
+ */
+public class MapVariableResolver implements VariableResolver {
+    
+    private final Map<String, String> variables;
+    
+    public MapVariableResolver(Map<String, String> variables) {
+        this.variables = Map.copyOf(variables);
+    }
+    
+    @Override
+    public String getVariable(String varName) {
+        return variables.get(varName);
+    }
+    
+    @Override
+    public Map<String, String> getVariables(Set<String> varNames) {
+        Map<String, String> values = new HashMap<>();
+        for (String varName : varNames) {
+            String value = variables.get(varName);
+            if (value != null) {
+                values.put(varName, value);
+            }
+        }
+        return values;
+    }
+}
\ No newline at end of file
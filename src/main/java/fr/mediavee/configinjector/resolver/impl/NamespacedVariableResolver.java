@@ -0,0 +1,74 @@
+package fr.mediavee.configinjector.resolver.impl;
+
+import fr.mediavee.configinjector.resolver.VariableNamespaces;
+import fr.mediavee.configinjector.resolver.VariableResolver;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Variable resolver dispatching {@code prefix:NAME} names straight to the resolver of their prefix, with a single
+ * map lookup, and every other name to a fallback resolver, usually a {@link CompositeVariableResolver} trying each
+ * source in order. Prefixes given to the constructor take precedence over the ones registered in
+ * {@link VariableNamespaces}; a name with an unknown prefix is unset.
+ */
+public class NamespacedVariableResolver implements VariableResolver {
+
+    private final VariableResolver fallback;
+    private final Map<String, VariableResolver> namespaces;
+
+    public NamespacedVariableResolver(VariableResolver fallback, Map<String, VariableResolver> namespaces) {
+        this.fallback = fallback;
+        this.namespaces = Map.copyOf(namespaces);
+    }
+
+    @Override
+    public String getVariable(String varName) {
+        int separator = varName.indexOf(VariableNamespaces.SEPARATOR);
+        if (separator < 0) {
+            return fallback.getVariable(varName);
+        }
+        VariableResolver resolver = namespace(varName.substring(0, separator));
+        return resolver != null ? resolver.getVariable(varName.substring(separator + 1)) : null;
+    }
+
+    /**
+     * Asks the fallback for the names without prefix and each namespace for its own names, one bulk lookup each.
+     */
+    @Override
+    public Map<String, String> getVariables(Set<String> varNames) {
+        Set<String> plain = new LinkedHashSet<>();
+        Map<String, Set<String>> namespaced = new HashMap<>();
+        for (String varName : varNames) {
+            int separator = varName.indexOf(VariableNamespaces.SEPARATOR);
+            if (separator < 0) {
+                plain.add(varName);
+            } else {
+                namespaced.computeIfAbsent(varName.substring(0, separator), prefix -> new LinkedHashSet<>())
+                    .add(varName.substring(separator + 1));
+            }
+        }
+
+        Map<String, String> values = new HashMap<>();
+        if (!plain.isEmpty()) {
+            values.putAll(fallback.getVariables(plain));
+        }
+        for (Map.Entry<String, Set<String>> namespace : namespaced.entrySet()) {
+            VariableResolver resolver = namespace(namespace.getKey());
+            if (resolver == null) {
+                continue;
+            }
+            for (Map.Entry<String, String> value : resolver.getVariables(namespace.getValue()).entrySet()) {
+                values.put(namespace.getKey() + VariableNamespaces.SEPARATOR + value.getKey(), value.getValue());
+            }
+        }
+        return values;
+    }
+
+    private VariableResolver namespace(String prefix) {
+        VariableResolver resolver = namespaces.get(prefix);
+        return resolver != null ? resolver : VariableNamespaces.getRegistered(prefix);
+    }
+}
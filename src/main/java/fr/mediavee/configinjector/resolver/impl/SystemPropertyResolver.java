@@ -0,0 +1,14 @@
+package fr.mediavee.configinjector.resolver.impl;
+
+import fr.mediavee.configinjector.resolver.VariableResolver;
+
+/**
+ * Variable resolver that uses the JVM system properties, such as those given with {@code -Dname=value}.
+ */
+public class SystemPropertyResolver implements VariableResolver {
+
+    @Override
+    public String getVariable(String varName) {
+        return System.getProperty(varName);
+    }
+}
@@ -2,6 +2,10 @@ package fr.mediavee.configinjector.resolver.impl;
 
 import fr.mediavee.configinjector.resolver.VariableResolver;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * Variable resolver that uses system environment variables.
  */
@@ -11,4 +15,17 @@ public class SystemVariableResolver implements VariableResolver {
     public String getVariable(String varName) {
         return System.getenv(varName);
     }
+    
+    @Override
+    public Map<String, String> getVariables(Set<String> varNames) {
+        Map<String, String> environment = System.getenv();
+        Map<String, String> values = new HashMap<>();
+        for (String varName : varNames) {
+            String value = environment.get(varName);
+            if (value != null) {
+                values.put(varName, value);
+            }
+        }
+        return values;
+    }
 }
\ No newline at end of file
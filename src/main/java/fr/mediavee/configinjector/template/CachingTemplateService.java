@@ -0,0 +1,110 @@
+package fr.mediavee.configinjector.template;
+
+import fr.mediavee.configinjector.resolver.VariableNamespaces;
+import fr.mediavee.configinjector.resolver.VariableResolver;
+import fr.mediavee.configinjector.resolver.impl.ExpandingVariableResolver;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Template service compiling each distinct template once. Compiled templates are kept in two generations:
+ * lookups and insertions go to the current one, and when it holds half the limit it becomes the previous
+ * generation and the former previous one is dropped. A template found in the previous generation is moved back
+ * to the current one, so frequently rendered templates survive while the total stays under the limit.
+ * Reads never lock, and concurrent misses at most compile a template twice. Both generations are dropped once a
+ * namespace prefix was registered or unregistered, as it changes how {@code ${prefix:NAME}} placeholders read.
+ * Only templates are cached, never values: the placeholders in the values of variables are expanded anew by every
+ * {@link #render(String)}, so the names other plugins render do not pile up in memory.
+ */
+public class CachingTemplateService implements TemplateService {
+
+    public static final int DEFAULT_MAX_TEMPLATES = 1024;
+
+    private final int generationSize;
+    private volatile VariableResolver resolver;
+    private volatile Map<String, Template> current = new ConcurrentHashMap<>();
+    private volatile Map<String, Template> previous = new ConcurrentHashMap<>();
+    private volatile int namespaces = VariableNamespaces.getVersion();
+
+    /**
+     * @param resolver the variables rendered by {@link #render(String)}, which should hold them in memory
+     * @param maxTemplates the number of compiled templates kept, give or take concurrent insertions
+     */
+    public CachingTemplateService(VariableResolver resolver, int maxTemplates) {
+        if (maxTemplates < 2) {
+            throw new IllegalArgumentException("At least two templates must be cached, got " + maxTemplates);
+        }
+        this.resolver = resolver;
+        this.generationSize = maxTemplates / 2;
+    }
+
+    /**
+     * Replaces the variables rendered by {@link #render(String)}, for instance after the env file changed.
+     * Compiled templates are kept, as they do not depend on the values.
+     */
+    public void setResolver(VariableResolver resolver) {
+        this.resolver = resolver;
+    }
+
+    @Override
+    public String render(String template) {
+        // Expansions are only remembered for this render
+        return render(template, new ExpandingVariableResolver(resolver));
+    }
+
+    @Override
+    public String render(String template, VariableResolver resolver) {
+        return compile(template).render(null, resolver);
+    }
+
+    @Override
+    public Template compile(String template) {
+        if (template == null) {
+            throw new IllegalArgumentException("Template source cannot be null");
+        }
+        if (namespaces != VariableNamespaces.getVersion()) {
+            clear();
+        }
+        Map<String, Template> generation = current;
+        Template compiled = generation.get(template);
+        if (compiled != null) {
+            return compiled;
+        }
+
+        compiled = previous.get(template);
+        if (compiled == null) {
+            compiled = Template.parse(template);
+        }
+        if (generation.size() >= generationSize) {
+            rotate(generation);
+            generation = current;
+        }
+        generation.put(template, compiled);
+        return compiled;
+    }
+
+    /**
+     * @return the number of compiled templates currently cached
+     */
+    public int size() {
+        return current.size() + previous.size();
+    }
+
+    private synchronized void clear() {
+        int version = VariableNamespaces.getVersion();
+        if (namespaces != version) {
+            current = new ConcurrentHashMap<>();
+            previous = new ConcurrentHashMap<>();
+            namespaces = version;
+        }
+    }
+
+    private synchronized void rotate(Map<String, Template> full) {
+        // Another thread may have rotated already
+        if (current == full) {
+            previous = full;
+            current = new ConcurrentHashMap<>();
+        }
+    }
+}
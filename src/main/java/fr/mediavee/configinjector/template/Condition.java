@@ -0,0 +1,207 @@
+package fr.mediavee.configinjector.template;
+
+import fr.mediavee.configinjector.resolver.VariableResolver;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * A {@code when:} condition, compiled once into a tree and evaluated against resolved variables.
+ *
+ * <pre>
+ * condition  := or
+ * or         := and ('||' and)*
+ * and        := unary ('&amp;&amp;' unary)*
+ * unary      := '!' unary | '(' or ')' | comparison
+ * comparison := operand (('==' | '!=') operand)?
+ * operand    := ${VAR} | ${VAR:default} | 'quoted' | "quoted" | word
+ * </pre>
+ *
+ * Quoted operands may contain placeholders, such as {@code "${REGION}-${ZONE}"}. Unset variables without
+ * a default are empty. An operand on its own is true unless it is empty or {@code false}, ignoring case.
+ */
+public final class Condition {
+
+    private final String source;
+    private final Node root;
+    private final Set<String> variableNames;
+
+    private Condition(String source, Node root, Set<String> variableNames) {
+        this.source = source;
+        this.root = root;
+        this.variableNames = variableNames;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the condition is malformed, with the position of the error
+     */
+    public static Condition parse(String source) {
+        if (source == null || source.isBlank()) {
+            throw new IllegalArgumentException("Condition cannot be empty");
+        }
+        Parser parser = new Parser(source);
+        Node root = parser.parseOr();
+        parser.skipWhitespace();
+        if (!parser.atEnd()) {
+            throw parser.error("unexpected '" + source.charAt(parser.position) + "'");
+        }
+        return new Condition(source, root, parser.variableNames);
+    }
+
+    public boolean evaluate(VariableResolver resolver) {
+        return root.test(resolver);
+    }
+
+    /**
+     * @return the names of the variables the condition reads, in order of first appearance
+     */
+    public Set<String> getVariableNames() {
+        return variableNames;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    private interface Node {
+        boolean test(VariableResolver resolver);
+    }
+
+    private static final class Parser {
+        private final String source;
+        private final Set<String> variableNames = new LinkedHashSet<>();
+        private int position;
+
+        private Parser(String source) {
+            this.source = source;
+        }
+
+        private Node parseOr() {
+            Node left = parseAnd();
+            while (consume("||")) {
+                Node first = left;
+                Node second = parseAnd();
+                left = resolver -> first.test(resolver) || second.test(resolver);
+            }
+            return left;
+        }
+
+        private Node parseAnd() {
+            Node left = parseUnary();
+            while (consume("&&")) {
+                Node first = left;
+                Node second = parseUnary();
+                left = resolver -> first.test(resolver) && second.test(resolver);
+            }
+            return left;
+        }
+
+        private Node parseUnary() {
+            skipWhitespace();
+            if (peek("!") && !peek("!=")) {
+                position++;
+                Node operand = parseUnary();
+                return resolver -> !operand.test(resolver);
+            }
+            if (consume("(")) {
+                Node inner = parseOr();
+                if (!consume(")")) {
+                    throw error("missing ')'");
+                }
+                return inner;
+            }
+
+            Template left = parseOperand();
+            if (consume("==")) {
+                Template right = parseOperand();
+                return resolver -> render(left, resolver).equals(render(right, resolver));
+            }
+            if (consume("!=")) {
+                Template right = parseOperand();
+                return resolver -> !render(left, resolver).equals(render(right, resolver));
+            }
+            return resolver -> {
+                String value = render(left, resolver);
+                return !value.isEmpty() && !value.equalsIgnoreCase("false");
+            };
+        }
+
+        private Template parseOperand() {
+            skipWhitespace();
+            if (atEnd()) {
+                throw error("missing operand");
+            }
+
+            int start = position;
+            char c = source.charAt(position);
+            String text;
+            if (c == '\'' || c == '"') {
+                int end = source.indexOf(c, position + 1);
+                if (end < 0) {
+                    throw error("unterminated string");
+                }
+                text = source.substring(position + 1, end);
+                position = end + 1;
+            } else if (peek("${")) {
+                int end = Template.placeholderEnd(source, position);
+                if (end < 0) {
+                    throw error("unterminated placeholder");
+                }
+                text = source.substring(position, end);
+                position = end;
+            } else {
+                while (!atEnd() && isWordChar(source.charAt(position))) {
+                    position++;
+                }
+                if (position == start) {
+                    throw error("unexpected '" + c + "'");
+                }
+                text = source.substring(start, position);
+            }
+
+            Template template = Template.parse(text);
+            variableNames.addAll(template.getVariableNames());
+            return template;
+        }
+
+        private static boolean isWordChar(char c) {
+            return !Character.isWhitespace(c) && "()!=&|'\"$".indexOf(c) < 0;
+        }
+
+        private static String render(Template template, VariableResolver resolver) {
+            return template.render(null, resolver);
+        }
+
+        private boolean consume(String token) {
+            skipWhitespace();
+            if (peek(token)) {
+                position += token.length();
+                return true;
+            }
+            return false;
+        }
+
+        private boolean peek(String token) {
+            return source.startsWith(token, position);
+        }
+
+        private void skipWhitespace() {
+            while (!atEnd() && Character.isWhitespace(source.charAt(position))) {
+                position++;
+            }
+        }
+
+        private boolean atEnd() {
+            return position >= source.length();
+        }
+
+        private IllegalArgumentException error(String reason) {
+            return new IllegalArgumentException("Invalid condition '" + source + "' at position " + position + ": " + reason);
+        }
+    }
+}
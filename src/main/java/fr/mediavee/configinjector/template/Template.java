@@ -0,0 +1,321 @@
+package fr.mediavee.configinjector.template;
+
+import fr.mediavee.configinjector.processor.AbstractFileProcessor.RequiredVariableValidator;
+import fr.mediavee.configinjector.resolver.VariableNamespaces;
+import fr.mediavee.configinjector.resolver.VariableResolver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A value tokenized once into literal text and {@code ${VAR}} / {@code ${VAR:default}} placeholders,
+ * so it can be rendered many times without being parsed again.
+ * Placeholders are found by a single-pass scanner: a name runs up to the first {@code :} or {@code }},
+ * a default up to the {@code }} closing the placeholder, and a {@code ${} that does not open a complete placeholder
+ * is literal text. Defaults may themselves contain placeholders, such as {@code ${DB_URL:${DB_HOST:localhost}:3306}},
+ * nested at most {@value #MAX_NESTING} levels deep. A name may start with a prefix of {@link VariableNamespaces},
+ * as in {@code ${env:HOME}} or {@code ${sys:user.home:/root}}, the prefix then being part of the variable name.
+ */
+public final class Template {
+
+    public static final int MAX_NESTING = 16;
+
+    private final String source;
+    private final List<Segment> segments;
+
+    private Template(String source, List<Segment> segments) {
+        this.source = source;
+        this.segments = segments;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the source is null or its defaults are nested too deep
+     */
+    public static Template parse(String source) {
+        if (source == null) {
+            throw new IllegalArgumentException("Template source cannot be null");
+        }
+        return parse(source, 0);
+    }
+
+    private static Template parse(String source, int depth) {
+        checkNesting(source, depth);
+
+        if (source.indexOf("${") < 0) {
+            return new Template(source, source.isEmpty() ? List.of() : List.of(Segment.literal(source)));
+        }
+
+        List<Segment> segments = new ArrayList<>();
+        int[] bounds = new int[3];
+        int last = 0;
+        for (int start = nextPlaceholder(source, 0, bounds); start >= 0; start = nextPlaceholder(source, last, bounds)) {
+            if (start > last) {
+                segments.add(Segment.literal(source.substring(last, start)));
+            }
+            String defaultValue = defaultValue(source, bounds);
+            Template defaultTemplate = defaultValue == null ? null : parse(defaultValue, depth + 1);
+            segments.add(Segment.placeholder(source.substring(start + 2, bounds[0]), defaultValue, defaultTemplate));
+            last = bounds[2];
+        }
+        if (last < source.length()) {
+            segments.add(Segment.literal(source.substring(last)));
+        }
+
+        return new Template(source, Collections.unmodifiableList(segments));
+    }
+
+    /**
+     * Renders a value in one pass without compiling it, for values rendered once.
+     * A value without placeholder is returned as is, without allocating.
+     */
+    public static String expand(String source, RequiredVariableValidator validator, VariableResolver resolver) {
+        return expand(source, validator, resolver, 0);
+    }
+
+    private static String expand(String source, RequiredVariableValidator validator, VariableResolver resolver, int depth) {
+        checkNesting(source, depth);
+        int start = source.indexOf("${");
+        if (start < 0) {
+            return source;
+        }
+        int[] bounds = new int[3];
+        start = nextPlaceholder(source, start, bounds);
+        if (start < 0) {
+            return source;
+        }
+
+        StringBuilder result = new StringBuilder(source.length() + 16);
+        int last = 0;
+        for (; start >= 0; start = nextPlaceholder(source, last, bounds)) {
+            result.append(source, last, start);
+            String name = source.substring(start + 2, bounds[0]);
+            String value = resolver.getVariable(name);
+            if (value == null) {
+                String defaultValue = defaultValue(source, bounds);
+                if (validator != null) {
+                    validator.checkRequired(name, defaultValue);
+                }
+                value = defaultValue != null ? expand(defaultValue, validator, resolver, depth + 1) : "";
+            }
+            result.append(value);
+            last = bounds[2];
+        }
+        return result.append(source, last, source.length()).toString();
+    }
+
+    /**
+     * Renders the template. Unresolved placeholders are replaced by their default value,
+     * or by an empty string after being reported to the validator when they have none.
+     */
+    public String render(RequiredVariableValidator validator, VariableResolver resolver) {
+        if (isConstant()) {
+            return source;
+        }
+
+        StringBuilder result = new StringBuilder(source.length() + 16);
+        for (Segment segment : segments) {
+            if (segment.literal != null) {
+                result.append(segment.literal);
+                continue;
+            }
+
+            String value = resolver.getVariable(segment.name);
+            if (value == null) {
+                if (validator != null) {
+                    validator.checkRequired(segment.name, segment.defaultValue);
+                }
+                value = segment.defaultTemplate != null ? segment.defaultTemplate.render(validator, resolver) : "";
+            }
+            result.append(value);
+        }
+        return result.toString();
+    }
+
+    private static void checkNesting(String source, int depth) {
+        if (depth > MAX_NESTING) {
+            throw new IllegalArgumentException("Invalid template: defaults nested more than " + MAX_NESTING + " levels deep in '" + source + "'");
+        }
+    }
+
+    /**
+     * @return the index after the '}' closing the placeholder starting at a position, or -1 if none starts there
+     */
+    static int placeholderEnd(String source, int start) {
+        int[] bounds = new int[3];
+        return nextPlaceholder(source, start, bounds) == start ? bounds[2] : -1;
+    }
+
+    /**
+     * Finds the next complete placeholder at or after a position.
+     *
+     * @param bounds receives the end of the name, the index of the ':' before the default or -1, and the index after the '}'
+     * @return the index of the '$' opening the placeholder, or -1 if there is none
+     */
+    private static int nextPlaceholder(String source, int from, int[] bounds) {
+        int length = source.length();
+        for (int start = source.indexOf("${", from); start >= 0; start = source.indexOf("${", start + 1)) {
+            int i = start + 2;
+            char c = 0;
+            while (i < length && (c = source.charAt(i)) != '}' && c != ':') {
+                i++;
+            }
+            if (i == start + 2 || i == length) {
+                continue;
+            }
+            if (c == ':' && VariableNamespaces.isNamespace(source.substring(start + 2, i))) {
+                // ${prefix:NAME}, the name runs up to the next ':' or '}'
+                int j = i + 1;
+                char d = 0;
+                while (j < length && (d = source.charAt(j)) != '}' && d != ':') {
+                    j++;
+                }
+                if (j > i + 1 && j < length) {
+                    i = j;
+                    c = d;
+                }
+            }
+
+            int nameEnd = i;
+            int colon = -1;
+            if (c == ':') {
+                colon = i;
+                i = closingBrace(source, i + 1);
+                if (i < 0) {
+                    continue;
+                }
+            }
+            bounds[0] = nameEnd;
+            bounds[1] = colon;
+            bounds[2] = i + 1;
+            return start;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the index of the '}' closing a default starting at a position, skipping the nested placeholders, or -1
+     */
+    private static int closingBrace(String source, int from) {
+        int depth = 0;
+        for (int i = from; i < source.length(); i++) {
+            char c = source.charAt(i);
+            if (c == '$' && i + 1 < source.length() && source.charAt(i + 1) == '{') {
+                depth++;
+                i++;
+            } else if (c == '}') {
+                if (depth == 0) {
+                    return i;
+                }
+                depth--;
+            }
+        }
+        return -1;
+    }
+
+    private static String defaultValue(String source, int[] bounds) {
+        return bounds[1] < 0 ? null : source.substring(bounds[1] + 1, bounds[2] - 1);
+    }
+
+    /**
+     * @return the names of the variables referenced by the template, including in defaults, in order of first appearance
+     */
+    public Set<String> getVariableNames() {
+        Set<String> names = new LinkedHashSet<>();
+        for (Segment segment : segments) {
+            if (segment.literal == null) {
+                names.add(segment.name);
+                if (segment.defaultTemplate != null) {
+                    names.addAll(segment.defaultTemplate.getVariableNames());
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * @return the names of the variables referenced without a default value, in order of first appearance; those in
+     * defaults are left out as they are only read when another variable is missing, and reported when rendered
+     */
+    public Set<String> getRequiredVariableNames() {
+        Set<String> names = new LinkedHashSet<>();
+        for (Segment segment : segments) {
+            if (segment.literal == null && segment.defaultValue == null) {
+                names.add(segment.name);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Collects the variables that would leave the template without a value: the unset variables without a default,
+     * and those of the defaults rendered in place of unset variables, in declaration order.
+     */
+    public void collectMissingVariables(VariableResolver resolver, Set<String> missing) {
+        for (Segment segment : segments) {
+            if (segment.literal != null || resolver.getVariable(segment.name) != null) {
+                continue;
+            }
+            if (segment.defaultTemplate == null) {
+                missing.add(segment.name);
+            } else {
+                segment.defaultTemplate.collectMissingVariables(resolver, missing);
+            }
+        }
+    }
+
+    /**
+     * @return true if the template references a variable that may be read from the system environment or the env file,
+     * that is without prefix or with the {@code env} or {@code dotenv} prefix, including in defaults
+     */
+    public boolean readsEnvironment() {
+        for (String name : getVariableNames()) {
+            int separator = name.indexOf(VariableNamespaces.SEPARATOR);
+            String prefix = separator < 0 ? null : name.substring(0, separator);
+            if (prefix == null || prefix.equals(VariableNamespaces.ENV) || prefix.equals(VariableNamespaces.DOTENV)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the template contains no placeholder
+     */
+    public boolean isConstant() {
+        return segments.size() <= 1 && (segments.isEmpty() || segments.get(0).literal != null);
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    private static final class Segment {
+        private final String literal;
+        private final String name;
+        private final String defaultValue;
+        private final Template defaultTemplate;
+
+        private Segment(String literal, String name, String defaultValue, Template defaultTemplate) {
+            this.literal = literal;
+            this.name = name;
+            this.defaultValue = defaultValue;
+            this.defaultTemplate = defaultTemplate;
+        }
+
+        private static Segment literal(String text) {
+            return new Segment(text, null, null, null);
+        }
+
+        private static Segment placeholder(String name, String defaultValue, Template defaultTemplate) {
+            return new Segment(null, name, defaultValue, defaultTemplate);
+        }
+    }
+}
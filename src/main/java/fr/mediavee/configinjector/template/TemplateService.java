@@ -0,0 +1,34 @@
+package fr.mediavee.configinjector.template;
+
+import fr.mediavee.configinjector.resolver.VariableResolver;
+
+/**
+ * Renders {@code ${VAR}} and {@code ${VAR:default}} strings at runtime with the variables ConfigInjector injects,
+ * for messages or URLs built by other plugins. Registered in the Bukkit {@code ServicesManager}:
+ *
+ * <pre>
+ * TemplateService templates = Bukkit.getServicesManager().load(TemplateService.class);
+ * String url = templates.render("https://${API_HOST:localhost}/v1");
+ * </pre>
+ *
+ * Implementations are safe to use from any thread.
+ */
+public interface TemplateService {
+
+    /**
+     * Renders a template with the variables of the system environment and the env file.
+     * Unset variables without a default render as an empty string.
+     */
+    String render(String template);
+
+    /**
+     * Renders a template with the given variables only.
+     */
+    String render(String template, VariableResolver resolver);
+
+    /**
+     * @return the compiled template, to be rendered many times or inspected
+     * @throws IllegalArgumentException if the template is null
+     */
+    Template compile(String template);
+}
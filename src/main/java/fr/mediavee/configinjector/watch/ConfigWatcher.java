@@ -0,0 +1,137 @@
+package fr.mediavee.configinjector.watch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Watches a set of files and reports their changes on a background thread.
+ * Bursts of events, such as an editor writing a temp file then renaming it, are debounced:
+ * the callback fires once none of the watched files changed for the debounce delay, with every file changed meanwhile.
+ * Events on the other files of the watched directories neither trigger the callback nor delay it.
+ */
+public class ConfigWatcher implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(ConfigWatcher.class.getName());
+
+    private final WatchService watchService;
+    private final Map<Path, Set<Path>> watchedFilesByDirectory = new HashMap<>();
+    private final long debounceMillis;
+    private final Consumer<Set<Path>> listener;
+    private final Thread thread;
+
+    /**
+     * @param files the files to watch, their parent directories must exist
+     * @param debounceMillis how long to wait for the event burst to settle
+     * @param listener called on the watcher thread with the absolute paths of the changed files
+     */
+    public ConfigWatcher(Collection<Path> files, long debounceMillis, Consumer<Set<Path>> listener) throws IOException {
+        this.debounceMillis = debounceMillis;
+        this.listener = listener;
+        this.watchService = FileSystems.getDefault().newWatchService();
+
+        try {
+            for (Path file : files) {
+                Path absolute = file.toAbsolutePath().normalize();
+                Path directory = absolute.getParent();
+                if (!watchedFilesByDirectory.containsKey(directory)) {
+                    directory.register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY,
+                        StandardWatchEventKinds.ENTRY_DELETE);
+                    watchedFilesByDirectory.put(directory, new LinkedHashSet<>());
+                }
+                watchedFilesByDirectory.get(directory).add(absolute);
+            }
+        } catch (IOException e) {
+            watchService.close();
+            throw e;
+        }
+
+        this.thread = new Thread(this::watch, "ConfigInjector-watcher");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+        thread.interrupt();
+        watchService.close();
+    }
+
+    private void watch() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Set<Path> changed = new LinkedHashSet<>();
+                while (!collect(watchService.take(), changed)) {
+                    // Only unwatched files of the directories changed
+                }
+
+                // Keep draining until the burst settles
+                long debounceNanos = TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+                long deadline = System.nanoTime() + debounceNanos;
+                for (long remaining = debounceNanos; remaining > 0; remaining = deadline - System.nanoTime()) {
+                    WatchKey key = watchService.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (key != null && collect(key, changed)) {
+                        deadline = System.nanoTime() + debounceNanos;
+                    }
+                }
+
+                notifyListener(changed);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException ignored) {
+        }
+    }
+
+    /**
+     * @return true if an event of the key concerns a watched file
+     */
+    private boolean collect(WatchKey key, Set<Path> changed) {
+        Path directory = (Path) key.watchable();
+        Set<Path> watchedFiles = watchedFilesByDirectory.get(directory);
+
+        boolean watched = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                changed.addAll(watchedFiles);
+                watched = true;
+                continue;
+            }
+            Path file = directory.resolve((Path) event.context());
+            if (watchedFiles.contains(file)) {
+                changed.add(file);
+                watched = true;
+            }
+        }
+        key.reset();
+        return watched;
+    }
+
+    private void notifyListener(Set<Path> changed) {
+        try {
+            listener.accept(changed);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Error while handling changes of " + changed, e);
+        }
+    }
+}
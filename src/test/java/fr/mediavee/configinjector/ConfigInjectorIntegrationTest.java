@@ -4,15 +4,18 @@ import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import fr.mediavee.configinjector.processor.FileProcessor;
 import fr.mediavee.configinjector.processor.FileProcessorFactory;
+import org.bukkit.plugin.Plugin;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.yaml.snakeyaml.Yaml;
 
 import java.io.*;
+import java.lang.reflect.Proxy;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
@@ -225,6 +228,38 @@ class ConfigInjectorIntegrationTest {
         }
     }
 
+    @Test
+    void testBootstrapWaitsForEachPluginBeforeItLoads() {
+        Plugin first = createPlugin("TestPlugin1");
+        Plugin second = createPlugin("TestPlugin2");
+        Plugin self = createPlugin("ConfigInjector");
+        Plugin last = createPlugin("TestPlugin3");
+        Path firstFolder = pluginsDir.resolve("TestPlugin1").toAbsolutePath().normalize();
+        Path secondFolder = pluginsDir.resolve("TestPlugin2").toAbsolutePath().normalize();
+        Path lastFolder = pluginsDir.resolve("TestPlugin3").toAbsolutePath().normalize();
+
+        // In the constructor only the plugins constructed earlier are listed, and their onLoad comes first
+        assertEquals(List.of(firstFolder, secondFolder), ConfigInjector.dataFolders(new Plugin[]{first, second}, self, true));
+
+        Plugin[] plugins = {first, second, self, last};
+        assertEquals(List.of(firstFolder, secondFolder), ConfigInjector.dataFolders(plugins, self, true));
+        assertEquals(List.of(lastFolder), ConfigInjector.dataFolders(plugins, self, false));
+    }
+
+    private Plugin createPlugin(String name) {
+        File dataFolder = pluginsDir.resolve(name).toFile();
+        return (Plugin) Proxy.newProxyInstance(Plugin.class.getClassLoader(), new Class<?>[]{Plugin.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getDataFolder":
+                    return dataFolder;
+                case "getName":
+                    return name;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
     private void writeJsonFile(Path path, JsonObject data) throws IOException {
         Gson gson = new Gson();
         try (FileWriter writer = new FileWriter(path.toFile())) {
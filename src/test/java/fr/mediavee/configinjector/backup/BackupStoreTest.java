@@ -0,0 +1,163 @@
+package fr.mediavee.configinjector.backup;
+
+import fr.mediavee.configinjector.engine.DurableCommit;
+import fr.mediavee.configinjector.engine.InjectionEngine;
+import fr.mediavee.configinjector.processor.ContentWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BackupStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testIdenticalContentsAreStoredOnce() throws Exception {
+        BackupStore store = new BackupStore(tempDir.resolve("backups"), 10, Long.MAX_VALUE);
+
+        BackupStore.Session first = store.begin();
+        first.backup(tempDir.resolve("a.yml"), bytes("same"));
+        first.backup(tempDir.resolve("b.yml"), bytes("same"));
+        first.finish();
+        BackupStore.Session second = store.begin();
+        second.backup(tempDir.resolve("a.yml"), bytes("same"));
+        second.finish();
+
+        assertNotEquals(first.getId(), second.getId());
+        assertEquals(List.of(first.getId(), second.getId()), store.list());
+        assertEquals(1, countBlobs(store));
+        assertEquals("same", new String(store.readBlob(BackupStore.hash(bytes("same"))), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testSessionWithoutBackupSavesNoIndex() throws Exception {
+        BackupStore store = new BackupStore(tempDir.resolve("backups"), 10, Long.MAX_VALUE);
+
+        assertFalse(store.begin().finish());
+        assertTrue(store.list().isEmpty());
+    }
+
+    @Test
+    void testRollbackRestoresPreviousContent() throws Exception {
+        Path file = tempDir.resolve("config.properties");
+        Files.writeString(file, "key=good\n");
+        BackupStore store = new BackupStore(tempDir.resolve("backups"), 10, Long.MAX_VALUE);
+
+        InjectionEngine engine = new InjectionEngine(tempDir, name -> null, true);
+        engine.setBackupStore(store);
+        engine.run(List.of(createReplacement("config.properties", "bad")));
+        assertTrue(Files.readString(file).contains("key=bad"));
+        String id = store.list().get(0);
+
+        List<Path> restored = store.rollback(id);
+
+        assertEquals(List.of(file.toAbsolutePath().normalize()), restored);
+        assertEquals("key=good\n", Files.readString(file));
+        // The rollback backed up the content it replaced
+        assertEquals(2, store.list().size());
+        assertThrows(NoSuchFileException.class, () -> store.rollback("19700101-000000-000"));
+    }
+
+    @Test
+    void testRollbackDeletesCreatedFiles() throws Exception {
+        Path file = tempDir.resolve("config.yml");
+        BackupStore store = new BackupStore(tempDir.resolve("backups"), 10, Long.MAX_VALUE);
+
+        BackupStore.Session session = store.begin();
+        session.wrap(ContentWriter.DIRECT).write(file, null, bytes("created"));
+        session.finish();
+        assertEquals(Map.of(file.toAbsolutePath().normalize(), BackupStore.ABSENT), store.read(session.getId()));
+
+        assertEquals(List.of(file.toAbsolutePath().normalize()), store.rollback(session.getId()));
+        assertFalse(Files.exists(file));
+
+        // The rollback backed up the deleted file, so rolling it back brings the file back
+        store.rollback(store.list().get(1));
+        assertEquals("created", Files.readString(file));
+    }
+
+    @Test
+    void testFileLeftAsAnotherProcessChangedItIsNotBackedUp() throws Exception {
+        Path file = tempDir.resolve("config.yml");
+        Files.writeString(file, "old");
+        BackupStore store = new BackupStore(tempDir.resolve("backups"), 10, Long.MAX_VALUE);
+
+        BackupStore.Session session = store.begin();
+        DurableCommit commit = new DurableCommit();
+        session.wrap(commit).write(file, bytes("old"), bytes("new"));
+        Files.writeString(file, "external content");
+        commit.commit();
+
+        assertEquals("external content", Files.readString(file));
+        assertFalse(session.finish());
+    }
+
+    @Test
+    void testRetentionKeepsLatestRunsAndSweepsUnreferencedBlobs() throws Exception {
+        BackupStore store = new BackupStore(tempDir.resolve("backups"), 2, Long.MAX_VALUE);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            BackupStore.Session session = store.begin();
+            session.backup(tempDir.resolve("config.yml"), bytes("content " + i));
+            session.finish();
+            ids.add(session.getId());
+        }
+        assertEquals(ids.subList(1, 3), store.list());
+
+        // Blobs are only swept once older than the grace period
+        assertEquals(3, countBlobs(store));
+        try (Stream<Path> blobs = Files.walk(store.getDirectory().resolve("objects"))) {
+            for (Path blob : (Iterable<Path>) blobs.filter(Files::isRegularFile)::iterator) {
+                Files.setLastModifiedTime(blob, FileTime.fromMillis(System.currentTimeMillis() - 3_600_000));
+            }
+        }
+        store.collectGarbage();
+
+        assertEquals(2, countBlobs(store));
+        assertFalse(Files.exists(store.blobPath(BackupStore.hash(bytes("content 0")))));
+    }
+
+    @Test
+    void testRetentionBoundedByBytesKeepsLatestRun() throws Exception {
+        BackupStore store = new BackupStore(tempDir.resolve("backups"), 10, 1);
+        String latest = null;
+        for (int i = 0; i < 3; i++) {
+            BackupStore.Session session = store.begin();
+            session.backup(tempDir.resolve("config.yml"), bytes("content " + i));
+            session.finish();
+            latest = session.getId();
+        }
+
+        assertEquals(List.of(latest), store.list());
+    }
+
+    private int countBlobs(BackupStore store) throws Exception {
+        try (Stream<Path> blobs = Files.walk(store.getDirectory().resolve("objects"))) {
+            return (int) blobs.filter(Files::isRegularFile).count();
+        }
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private Map<String, Object> createReplacement(String file, String value) {
+        Map<String, Object> change = new HashMap<>();
+        change.put("path", "key");
+        change.put("value", value);
+        Map<String, Object> replacement = new HashMap<>();
+        replacement.put("file", file);
+        replacement.put("changes", List.of(change));
+        return replacement;
+    }
+}
@@ -0,0 +1,208 @@
+package fr.mediavee.configinjector.cli;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConfigInjectorCliTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path configFile;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        configFile = tempDir.resolve("plugins/ConfigInjector/config.yml");
+        Files.createDirectories(configFile.getParent());
+        Files.writeString(tempDir.resolve(".env"), "CLI_DB_HOST=db.example.com\n");
+        Files.createDirectories(tempDir.resolve("plugins/MyPlugin"));
+        Files.writeString(tempDir.resolve("plugins/MyPlugin/config.yml"), "database:\n  host: localhost\n");
+    }
+
+    @Test
+    void testInjectsFilesUnderRoot() throws IOException {
+        writeConfig("stop-on-error: true", "plugins/MyPlugin/config.yml", "${CLI_DB_HOST}");
+
+        int exitCode = run("--root", tempDir.toString());
+
+        assertEquals(ConfigInjectorCli.EXIT_OK, exitCode, err.toString());
+        assertTrue(Files.readString(tempDir.resolve("plugins/MyPlugin/config.yml")).contains("host: db.example.com"));
+        assertTrue(Files.exists(configFile.resolveSibling("state.properties")));
+    }
+
+    @Test
+    void testFilterTransformsStdinToStdout() throws IOException {
+        writeConfig("", "plugins/*/config.yml", "${CLI_DB_HOST}");
+
+        int exitCode = runWithInput("database:\n  host: localhost\n  port: 3306\n",
+            "--root", tempDir.toString(), "--filter", "plugins/Other/config.yml");
+
+        assertEquals(ConfigInjectorCli.EXIT_OK, exitCode, err.toString());
+        String output = out.toString(StandardCharsets.UTF_8);
+        assertTrue(output.contains("host: db.example.com"), output);
+        assertTrue(output.contains("port: 3306"), output);
+        assertEquals("database:\n  host: localhost\n", Files.readString(tempDir.resolve("plugins/MyPlugin/config.yml")));
+    }
+
+    @Test
+    void testFilterReportsVariablesMissingFromValues() throws IOException {
+        Files.writeString(tempDir.resolve(".env"), "CLI_DB_URL=jdbc://${CLI_NESTED_MISSING_12345}/db\n");
+        writeConfig("", "config.yml", "${CLI_DB_URL}");
+
+        int exitCode = runWithInput("database:\n  host: localhost\n", "--root", tempDir.toString(), "--filter", "config.yml");
+
+        assertEquals(ConfigInjectorCli.EXIT_FAILURE, exitCode);
+        assertTrue(err.toString().contains("CLI_NESTED_MISSING_12345"), err.toString());
+    }
+
+    @Test
+    void testFilterFailsWhenInputCannotBeProcessed() throws IOException {
+        writeConfig("stop-on-error: false", "config.json", "db.example.com");
+
+        int exitCode = runWithInput("{ not json", "--root", tempDir.toString(), "--filter", "config.json");
+
+        assertEquals(ConfigInjectorCli.EXIT_FAILURE, exitCode);
+        assertEquals("", out.toString(StandardCharsets.UTF_8));
+        assertTrue(err.toString().contains("Configuration processing failed"), err.toString());
+    }
+
+    @Test
+    void testMissingRequiredVariableExitCode() throws IOException {
+        writeConfig("", "plugins/MyPlugin/config.yml", "${CLI_MISSING_VAR_12345}");
+        assertEquals(ConfigInjectorCli.EXIT_FAILURE, run("--root", tempDir.toString()));
+        assertTrue(err.toString().contains("CLI_MISSING_VAR_12345"));
+
+        writeConfig("stop-on-missing-required: false", "plugins/MyPlugin/config.yml", "${CLI_MISSING_VAR_12345}");
+        assertEquals(ConfigInjectorCli.EXIT_OK, run("--root", tempDir.toString()));
+    }
+
+    @Test
+    void testErrorExitCodeFollowsStopOnError() throws IOException {
+        writeConfig("stop-on-error: false", "plugins/Missing/config.yml", "value");
+        assertEquals(ConfigInjectorCli.EXIT_OK, run("--root", tempDir.toString()));
+
+        writeConfig("stop-on-error: true", "plugins/Missing/config.yml", "value");
+        assertEquals(ConfigInjectorCli.EXIT_FAILURE, run("--root", tempDir.toString()));
+    }
+
+    @Test
+    void testFleetInjectsEveryRootWithItsOverlay() throws IOException {
+        Path shared = tempDir.resolve("shared");
+        Path fleetConfig = shared.resolve("config.yml");
+        Files.createDirectories(shared);
+        Files.writeString(shared.resolve("fleet.env"), "CLI_DB_HOST=shared.example.com\nCLI_DB_PORT=3306\n");
+        Files.writeString(fleetConfig, "replacements:\n"
+            + "  - file: \"plugins/MyPlugin/config.yml\"\n"
+            + "    changes:\n"
+            + "      - path: \"database.host\"\n"
+            + "        value: \"${CLI_DB_HOST}:${CLI_DB_PORT}\"\n");
+
+        List<Path> roots = new ArrayList<>();
+        List<String> args = new ArrayList<>(List.of("--config", fleetConfig.toString(), "--env-file", shared.resolve("fleet.env").toString(), "--parallelism", "2"));
+        for (int i = 0; i < 3; i++) {
+            Path root = tempDir.resolve("server" + i);
+            Files.createDirectories(root.resolve("plugins/MyPlugin"));
+            Files.writeString(root.resolve("plugins/MyPlugin/config.yml"), "database:\n  host: localhost\n");
+            roots.add(root);
+            args.add("--root");
+            args.add(root.toString());
+        }
+        Files.writeString(roots.get(1).resolve(".env"), "CLI_DB_HOST=server1.example.com\n");
+
+        int exitCode = run(args.toArray(new String[0]));
+
+        assertEquals(ConfigInjectorCli.EXIT_OK, exitCode, err.toString());
+        assertTrue(Files.readString(roots.get(0).resolve("plugins/MyPlugin/config.yml")).contains("shared.example.com:3306"));
+        assertTrue(Files.readString(roots.get(1).resolve("plugins/MyPlugin/config.yml")).contains("server1.example.com:3306"));
+        assertTrue(Files.readString(roots.get(2).resolve("plugins/MyPlugin/config.yml")).contains("shared.example.com:3306"));
+        assertTrue(Files.exists(roots.get(2).resolve("plugins/ConfigInjector/state.properties")));
+        assertTrue(err.toString().contains("Injected 3 roots, 0 failed"), err.toString());
+    }
+
+    @Test
+    void testFleetReportsFailingRootWithoutStoppingOthers() throws IOException {
+        writeConfig("stop-on-error: true", "plugins/MyPlugin/config.yml", "${CLI_DB_HOST}");
+        Path broken = tempDir.resolve("broken");
+        Files.createDirectories(broken);
+
+        int exitCode = run("--root", tempDir.toString(), "--root", broken.toString());
+
+        assertEquals(ConfigInjectorCli.EXIT_FAILURE, exitCode);
+        assertTrue(Files.readString(tempDir.resolve("plugins/MyPlugin/config.yml")).contains("host: db.example.com"));
+        assertTrue(err.toString().contains(broken + ": Failed to read"), err.toString());
+    }
+
+    @Test
+    void testDryRunHidesValuesFromEnvironment() throws IOException {
+        writeConfig("", "plugins/MyPlugin/config.yml", "${CLI_DB_HOST}");
+
+        assertEquals(ConfigInjectorCli.EXIT_OK, run("--root", tempDir.toString(), "--dry-run"), err.toString());
+        String output = err.toString(StandardCharsets.UTF_8);
+        assertTrue(output.contains("database.host: <hidden> -> <hidden>"), output);
+        assertFalse(output.contains("db.example.com"), output);
+
+        assertEquals(ConfigInjectorCli.EXIT_OK, run("--root", tempDir.toString(), "--dry-run", "--show-values"), err.toString());
+        output = err.toString(StandardCharsets.UTF_8);
+        assertTrue(output.contains("database.host: \"localhost\" -> \"db.example.com\""), output);
+        assertEquals("database:\n  host: localhost\n", Files.readString(tempDir.resolve("plugins/MyPlugin/config.yml")));
+    }
+
+    @Test
+    void testParallelismAppliesToFilesOfSingleRoot() throws IOException {
+        for (String plugin : List.of("First", "Second", "Third")) {
+            Files.createDirectories(tempDir.resolve("plugins/" + plugin));
+            Files.writeString(tempDir.resolve("plugins/" + plugin + "/config.yml"), "database:\n  host: localhost\n");
+        }
+        writeConfig("", "plugins/*/config.yml", "${CLI_DB_HOST}");
+
+        int exitCode = run("--root", tempDir.toString(), "--parallelism", "3");
+
+        assertEquals(ConfigInjectorCli.EXIT_OK, exitCode, err.toString());
+        for (String plugin : List.of("MyPlugin", "First", "Second", "Third")) {
+            assertTrue(Files.readString(tempDir.resolve("plugins/" + plugin + "/config.yml")).contains("host: db.example.com"), plugin);
+        }
+    }
+
+    @Test
+    void testInvalidArguments() {
+        assertEquals(ConfigInjectorCli.EXIT_USAGE, run("--unknown", "value"));
+        assertEquals(ConfigInjectorCli.EXIT_USAGE, run("--root"));
+        assertEquals(ConfigInjectorCli.EXIT_USAGE, run("--parallelism", "none"));
+        assertEquals(ConfigInjectorCli.EXIT_USAGE, run("--root", "a", "--root", "b", "--filter", "config.yml"));
+    }
+
+    private void writeConfig(String settings, String file, String value) throws IOException {
+        Files.writeString(configFile, settings + "\n"
+            + "replacements:\n"
+            + "  - file: \"" + file + "\"\n"
+            + "    changes:\n"
+            + "      - path: \"database.host\"\n"
+            + "        value: \"" + value + "\"\n");
+    }
+
+    private int run(String... args) {
+        return runWithInput("", args);
+    }
+
+    private int runWithInput(String stdin, String... args) {
+        out.reset();
+        err.reset();
+        return ConfigInjectorCli.run(args, new ByteArrayInputStream(stdin.getBytes(StandardCharsets.UTF_8)),
+            new PrintStream(out, true, StandardCharsets.UTF_8), new PrintStream(err, true, StandardCharsets.UTF_8));
+    }
+}
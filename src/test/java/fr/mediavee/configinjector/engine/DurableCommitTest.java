@@ -0,0 +1,195 @@
+package fr.mediavee.configinjector.engine;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DurableCommitTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testFilesAreOnlyReplacedOnCommit() throws Exception {
+        Path first = tempDir.resolve("first.yml");
+        Path second = tempDir.resolve("plugins").resolve("second.yml");
+        Files.createDirectories(second.getParent());
+        Files.writeString(first, "old");
+        Files.writeString(second, "old");
+
+        DurableCommit commit = new DurableCommit();
+        commit.write(first, null, bytes("first"));
+        commit.write(second, null, bytes("second"));
+
+        assertEquals(2, commit.size());
+        assertEquals("old", Files.readString(first));
+
+        Set<Path> committed = commit.commit();
+
+        assertEquals(Set.of(first.toAbsolutePath().normalize(), second.toAbsolutePath().normalize()), committed);
+        assertEquals("first", Files.readString(first));
+        assertEquals("second", Files.readString(second));
+        assertEquals(0, commit.size());
+        assertEquals(List.of("first.yml", "plugins"), list(tempDir));
+    }
+
+    @Test
+    void testFileModifiedSinceWriteIsNotReplaced() throws Exception {
+        Path file = tempDir.resolve("config.yml");
+        Files.writeString(file, "old");
+        List<String> actions = new ArrayList<>();
+
+        DurableCommit commit = new DurableCommit();
+        commit.write(file, null, bytes("new"));
+        commit.whenCommitted(file, () -> actions.add("recorded"));
+        Files.writeString(file, "external");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+
+        assertTrue(commit.commit().isEmpty());
+        assertEquals("external", Files.readString(file));
+        assertTrue(actions.isEmpty());
+        assertEquals(List.of("config.yml"), list(tempDir));
+    }
+
+    @Test
+    void testWriteInSameMillisecondIsNoticed() throws Exception {
+        Path file = tempDir.resolve("config.yml");
+        Files.writeString(file, "old");
+        Files.setLastModifiedTime(file, FileTime.from(Instant.parse("2026-01-01T00:00:00.000001Z")));
+
+        DurableCommit commit = new DurableCommit();
+        commit.write(file, null, bytes("new"));
+        // Same size, same millisecond
+        Files.writeString(file, "xyz");
+        Files.setLastModifiedTime(file, FileTime.from(Instant.parse("2026-01-01T00:00:00.000002Z")));
+
+        assertTrue(commit.commit().isEmpty());
+        assertEquals("xyz", Files.readString(file));
+    }
+
+    @Test
+    void testContentChangedBetweenReadAndRenameIsNotReplaced() throws Exception {
+        Path file = tempDir.resolve("config.yml");
+        Files.writeString(file, "old");
+        FileTime read = Files.getLastModifiedTime(file);
+
+        DurableCommit commit = new DurableCommit();
+        commit.write(file, bytes("old"), bytes("new"));
+        // Another writer keeping the size and restoring the time, as a coarse-grained file system would show it
+        FileLocks.withLock(file, () -> Files.writeString(file, "xyz"));
+        Files.setLastModifiedTime(file, read);
+
+        assertTrue(commit.commit().isEmpty());
+        assertEquals("xyz", Files.readString(file));
+    }
+
+    @Test
+    void testSymbolicLinkIsKept() throws Exception {
+        Path real = tempDir.resolve("shared").resolve("config.yml");
+        Files.createDirectories(real.getParent());
+        Files.writeString(real, "old");
+        Path link = Files.createSymbolicLink(tempDir.resolve("config.yml"), real);
+
+        DurableCommit commit = new DurableCommit();
+        commit.write(link, null, bytes("new"));
+        assertEquals(Set.of(link.toAbsolutePath().normalize()), commit.commit());
+
+        assertTrue(Files.isSymbolicLink(link));
+        assertEquals("new", Files.readString(real));
+        assertEquals(List.of("config.yml"), list(real.getParent()));
+    }
+
+    @Test
+    void testFailedReplacementDoesNotStopOtherFiles() throws Exception {
+        Path broken = tempDir.resolve("broken.yml");
+        Path other = tempDir.resolve("other.yml");
+        Files.writeString(broken, "old");
+        Files.writeString(other, "old");
+
+        DurableCommit commit = new DurableCommit();
+        commit.write(broken, null, bytes("new"));
+        commit.write(other, null, bytes("new"));
+        // A directory can neither be renamed over the file nor read to write it in place
+        try (Stream<Path> files = Files.list(tempDir)) {
+            Path temp = files.filter(file -> file.getFileName().toString().startsWith(".broken.yml.")).findFirst().orElseThrow();
+            Files.delete(temp);
+            Files.createDirectory(temp);
+        }
+
+        assertThrows(IOException.class, commit::commit);
+        assertEquals("old", Files.readString(broken));
+        assertEquals("new", Files.readString(other));
+    }
+
+    @Test
+    void testActionsRunAfterRename() throws Exception {
+        Path file = tempDir.resolve("config.yml");
+        Files.writeString(file, "old");
+        List<String> contents = new ArrayList<>();
+
+        DurableCommit commit = new DurableCommit();
+        commit.write(file, null, bytes("new"));
+        commit.whenCommitted(file, () -> contents.add(Files.readString(file)));
+        commit.commit();
+
+        assertEquals(List.of("new"), contents);
+    }
+
+    @Test
+    void testEngineCommitsModifiedFilesAtEndOfRun() throws Exception {
+        Path manifestFile = tempDir.resolve("state.properties");
+        List<Map<String, Object>> replacements = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Files.writeString(tempDir.resolve("file" + i + ".properties"), "key=old\n");
+            Map<String, Object> change = new HashMap<>();
+            change.put("path", "key");
+            change.put("value", "new");
+            Map<String, Object> replacement = new HashMap<>();
+            replacement.put("file", "file" + i + ".properties");
+            replacement.put("changes", List.of(change));
+            replacements.add(replacement);
+        }
+
+        InjectionEngine engine = new InjectionEngine(tempDir, name -> null, true);
+        engine.setDurableWrites(true);
+        engine.setParallelism(2);
+        engine.setManifest(InjectionManifest.load(manifestFile));
+        InjectionResult result = engine.run(replacements);
+
+        assertEquals(4, result.getModifiedFiles());
+        assertTrue(result.getCommitNanos() > 0);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(Files.readString(tempDir.resolve("file" + i + ".properties")).contains("key=new"));
+        }
+
+        engine.setManifest(InjectionManifest.load(manifestFile));
+        assertEquals(4, engine.run(replacements).getSkippedFiles());
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> list(Path directory) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                .filter(name -> !name.endsWith(".lock"))
+                .sorted()
+                .toList();
+        }
+    }
+}
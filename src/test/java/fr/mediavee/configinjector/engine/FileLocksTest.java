@@ -0,0 +1,114 @@
+package fr.mediavee.configinjector.engine;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileLocksTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testSameFileIsSerialized() throws Exception {
+        Path file = tempDir.resolve("config.yml");
+        AtomicInteger inside = new AtomicInteger();
+        AtomicInteger maxInside = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<?>[] futures = new Future<?>[8];
+            for (int i = 0; i < futures.length; i++) {
+                // Same file through different spellings of its path
+                Path path = i % 2 == 0 ? file : tempDir.resolve("./sub/../config.yml");
+                futures[i] = executor.submit(() -> FileLocks.withLock(path, () -> {
+                    maxInside.accumulateAndGet(inside.incrementAndGet(), Math::max);
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5));
+                    inside.decrementAndGet();
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, maxInside.get());
+        assertTrue(Files.exists(tempDir.resolve(".config.yml.lock")));
+    }
+
+    @Test
+    void testDifferentFilesDoNotBlockEachOther() throws Exception {
+        // Pick two names on different stripes, so neither holder can block the other
+        Path first = tempDir.resolve("first.yml");
+        Path second = tempDir.resolve("second.yml");
+        for (int i = 0; FileLocks.stripe(first) == FileLocks.stripe(second); i++) {
+            second = tempDir.resolve("second" + i + ".yml");
+        }
+        Path other = second;
+        CountDownLatch bothInside = new CountDownLatch(2);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Boolean> firstResult = executor.submit(() -> FileLocks.withLock(first, () -> awaitOther(bothInside)));
+            Future<Boolean> secondResult = executor.submit(() -> FileLocks.withLock(other, () -> awaitOther(bothInside)));
+
+            assertTrue(firstResult.get(10, TimeUnit.SECONDS));
+            assertTrue(secondResult.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testLockIsReentrant() throws Exception {
+        Path file = tempDir.resolve("config.yml");
+
+        String result = FileLocks.withLock(file, () -> FileLocks.withLock(file, () -> "done"));
+
+        assertEquals("done", result);
+    }
+
+    @Test
+    void testNestedLockOnSameStripeLocksItsSidecar() throws Exception {
+        Path outer = tempDir.resolve("outer.yml");
+        Path inner = tempDir.resolve("inner.yml");
+        for (int i = 0; FileLocks.stripe(outer) != FileLocks.stripe(inner); i++) {
+            inner = tempDir.resolve("inner" + i + ".yml");
+        }
+        Path nested = inner;
+
+        FileLocks.withLock(outer, () -> FileLocks.withLock(nested, () -> {
+            try (FileChannel channel = FileChannel.open(FileLocks.sidecar(nested), StandardOpenOption.WRITE)) {
+                assertThrows(OverlappingFileLockException.class, channel::tryLock);
+            }
+            return null;
+        }));
+    }
+
+    private static boolean awaitOther(CountDownLatch latch) {
+        latch.countDown();
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package fr.mediavee.configinjector.engine;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GlobExpanderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        createFile("plugins/PluginA/config.yml");
+        createFile("plugins/PluginB/config.yml");
+        createFile("plugins/PluginB/config.yml.bak");
+        createFile("plugins/PluginB/nested/config.yml");
+        createFile("plugins/PluginC/database.yml");
+        createFile("world/paper-world.yml");
+        createFile("world_nether/paper-world.yml");
+        createFile("database.yml");
+    }
+
+    @Test
+    void testIsGlob() {
+        assertTrue(GlobExpander.isGlob("plugins/*/config.yml"));
+        assertTrue(GlobExpander.isGlob("world?/paper-world.yml"));
+        assertTrue(GlobExpander.isGlob("plugins/{A,B}/config.yml"));
+        assertFalse(GlobExpander.isGlob("plugins/PluginA/config.yml"));
+    }
+
+    @Test
+    void testExpandSingleLevelWildcard() throws IOException {
+        assertEquals(Arrays.asList(
+            "plugins/PluginA/config.yml",
+            "plugins/PluginB/config.yml"
+        ), GlobExpander.expand(tempDir, "plugins/*/config.yml"));
+    }
+
+    @Test
+    void testExpandRecursiveWildcard() throws IOException {
+        assertEquals(Arrays.asList(
+            "database.yml",
+            "plugins/PluginC/database.yml"
+        ), GlobExpander.expand(tempDir, "**/database.yml"));
+    }
+
+    @Test
+    void testExpandWildcardInFirstSegment() throws IOException {
+        assertEquals(Arrays.asList(
+            "world/paper-world.yml",
+            "world_nether/paper-world.yml"
+        ), GlobExpander.expand(tempDir, "world*/paper-world.yml"));
+    }
+
+    @Test
+    void testExpandWithoutMatches() throws IOException {
+        assertTrue(GlobExpander.expand(tempDir, "plugins/*/missing.yml").isEmpty());
+        assertTrue(GlobExpander.expand(tempDir, "missing/*/config.yml").isEmpty());
+    }
+
+    @Test
+    void testEngineProcessesEveryMatchedFile() throws IOException {
+        Map<String, Object> change = new HashMap<>();
+        change.put("path", "database.host");
+        change.put("value", "db.example.com");
+        Map<String, Object> replacement = new HashMap<>();
+        replacement.put("file", "plugins/*/config.yml");
+        replacement.put("changes", List.of(change));
+
+        InjectionEngine engine = new InjectionEngine(tempDir, name -> null, true);
+        InjectionResult result = engine.run(List.of(replacement));
+
+        assertEquals(2, result.getProcessedFiles());
+        assertTrue(Files.readString(tempDir.resolve("plugins/PluginA/config.yml")).contains("db.example.com"));
+        assertTrue(Files.readString(tempDir.resolve("plugins/PluginB/config.yml")).contains("db.example.com"));
+        assertFalse(Files.readString(tempDir.resolve("plugins/PluginB/nested/config.yml")).contains("db.example.com"));
+    }
+
+    private void createFile(String path) throws IOException {
+        Path file = tempDir.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, "key: value\n");
+    }
+}
@@ -0,0 +1,71 @@
+package fr.mediavee.configinjector.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InjectionBarrierTest {
+
+    private final Path root = Path.of("server").toAbsolutePath().normalize();
+    private final Path pluginA = root.resolve("plugins/PluginA");
+    private final Path pluginB = root.resolve("plugins/PluginB");
+
+    @Test
+    void testAwaitDirectoriesOnlyWaitsForTheirFiles() throws Exception {
+        InjectionBarrier barrier = new InjectionBarrier();
+        barrier.onTargetsResolved(List.of(pluginA.resolve("config.yml"), pluginB.resolve("config.yml")));
+
+        CountDownLatch released = awaitInBackground(barrier, List.of(pluginA));
+        assertFalse(released.await(50, TimeUnit.MILLISECONDS));
+
+        barrier.onFileProcessed(pluginB.resolve("config.yml"), null);
+        assertFalse(released.await(50, TimeUnit.MILLISECONDS));
+
+        barrier.onFileProcessed(pluginA.resolve("config.yml"), null);
+        assertTrue(released.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testAwaitDirectoriesWaitsForTargets() throws Exception {
+        InjectionBarrier barrier = new InjectionBarrier();
+
+        CountDownLatch released = awaitInBackground(barrier, List.of(pluginA));
+        assertFalse(released.await(50, TimeUnit.MILLISECONDS));
+
+        barrier.onTargetsResolved(List.of(pluginB.resolve("config.yml")));
+        assertTrue(released.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testCompletionReleasesWaitersWithFailure() throws Exception {
+        InjectionBarrier barrier = new InjectionBarrier();
+        barrier.onTargetsResolved(List.of(pluginA.resolve("config.yml")));
+
+        CountDownLatch released = awaitInBackground(barrier, List.of(pluginA));
+        IllegalStateException failure = new IllegalStateException("boom");
+        barrier.complete(failure);
+
+        assertTrue(released.await(1, TimeUnit.SECONDS));
+        barrier.awaitCompletion();
+        assertSame(failure, barrier.getFailure());
+    }
+
+    private static CountDownLatch awaitInBackground(InjectionBarrier barrier, List<Path> directories) {
+        CountDownLatch released = new CountDownLatch(1);
+        Thread thread = new Thread(() -> {
+            try {
+                barrier.awaitDirectories(directories);
+                released.countDown();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return released;
+    }
+}
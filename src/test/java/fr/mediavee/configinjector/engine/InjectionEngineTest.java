@@ -0,0 +1,383 @@
+package fr.mediavee.configinjector.engine;
+
+import fr.mediavee.configinjector.exception.MissingRequiredVariableException;
+import fr.mediavee.configinjector.processor.FileDiff;
+import fr.mediavee.configinjector.resolver.VariableResolver;
+import fr.mediavee.configinjector.resolver.impl.SystemVariableResolver;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InjectionEngineTest {
+
+    @TempDir
+    Path tempDir;
+
+    private InjectionEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new InjectionEngine(tempDir, new SystemVariableResolver(), true);
+    }
+
+    @Test
+    void testParseParallelism() {
+        assertEquals(1, InjectionEngine.parseParallelism(null));
+        assertEquals(1, InjectionEngine.parseParallelism("1"));
+        assertEquals(8, InjectionEngine.parseParallelism("8"));
+        assertEquals(Runtime.getRuntime().availableProcessors(), InjectionEngine.parseParallelism("auto"));
+        assertThrows(IllegalArgumentException.class, () -> InjectionEngine.parseParallelism("0"));
+        assertThrows(IllegalArgumentException.class, () -> InjectionEngine.parseParallelism("many"));
+    }
+
+    @Test
+    void testParseMemoryBudget() {
+        assertEquals(Runtime.getRuntime().maxMemory() / 4, InjectionEngine.parseMemoryBudget(null));
+        assertEquals(Runtime.getRuntime().maxMemory() / 4, InjectionEngine.parseMemoryBudget("auto"));
+        assertEquals(256L * 1024 * 1024, InjectionEngine.parseMemoryBudget("256"));
+        assertThrows(IllegalArgumentException.class, () -> InjectionEngine.parseMemoryBudget("0"));
+        assertThrows(IllegalArgumentException.class, () -> InjectionEngine.parseMemoryBudget("lots"));
+    }
+
+    @Test
+    void testRun_parallelMatchesSequentialCounts() throws Exception {
+        List<Map<String, Object>> replacements = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            String fileName = "file" + i + ".properties";
+            Files.writeString(tempDir.resolve(fileName), "key=old\n");
+            // Every other file already holds the injected value
+            String value = i % 2 == 0 ? "new" : "old";
+            replacements.add(createReplacement(fileName, createChange("key", value)));
+        }
+
+        engine.setParallelism(4);
+        engine.setMemoryBudget(64);
+        InjectionResult result = engine.run(replacements);
+
+        assertEquals(12, result.getProcessedFiles());
+        assertEquals(6, result.getModifiedFiles());
+        for (int i = 0; i < 12; i += 2) {
+            assertTrue(Files.readString(tempDir.resolve("file" + i + ".properties")).contains("key=new"));
+        }
+    }
+
+    @Test
+    void testRun_parallelMergesMissingVariablesInDeclarationOrder() throws Exception {
+        List<Map<String, Object>> replacements = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            String fileName = "file" + i + ".properties";
+            Files.writeString(tempDir.resolve(fileName), "");
+            replacements.add(createReplacement(fileName, createChange("key", "${MISSING_VAR_" + i + "_12345}")));
+        }
+
+        engine.setParallelism(3);
+        MissingRequiredVariableException exception = assertThrows(MissingRequiredVariableException.class, () -> engine.run(replacements));
+
+        assertEquals(Arrays.asList(
+            "MISSING_VAR_0_12345", "MISSING_VAR_1_12345", "MISSING_VAR_2_12345",
+            "MISSING_VAR_3_12345", "MISSING_VAR_4_12345", "MISSING_VAR_5_12345"
+        ), exception.getMissingVariables());
+    }
+
+    @Test
+    void testRun_parallelReportsMissingFile() throws IOException {
+        Files.writeString(tempDir.resolve("present.properties"), "");
+        List<Map<String, Object>> replacements = Arrays.asList(
+            createReplacement("present.properties", createChange("key", "value")),
+            createReplacement("absent.properties", createChange("key", "value"))
+        );
+
+        engine.setParallelism(2);
+        assertThrows(FileNotFoundException.class, () -> engine.run(replacements));
+    }
+
+    @Test
+    void testRun_coalescesEntriesTargetingSameFile() throws Exception {
+        Path file = tempDir.resolve("plugins").resolve("config.properties");
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, "host=old\nport=1\n");
+
+        List<Map<String, Object>> replacements = Arrays.asList(
+            createReplacement("plugins/config.properties", createChange("host", "first")),
+            createReplacement("plugins/../plugins/config.properties", createChange("port", "2")),
+            createReplacement("./plugins/config.properties", createChange("host", "last"))
+        );
+
+        InjectionResult result = engine.run(replacements);
+
+        assertEquals(1, result.getProcessedFiles());
+        assertEquals(1, result.getModifiedFiles());
+        String content = Files.readString(file);
+        assertTrue(content.contains("host=last"));
+        assertTrue(content.contains("port=2"));
+    }
+
+    @Test
+    void testRun_rejectsEntryWithoutChanges() {
+        Map<String, Object> replacement = new HashMap<>();
+        replacement.put("file", "config.properties");
+
+        assertThrows(IllegalArgumentException.class, () -> engine.run(List.of(replacement)));
+    }
+
+    @Test
+    void testRun_targetFilterRestrictsToOneFile() throws Exception {
+        Files.writeString(tempDir.resolve("first.properties"), "key=old\n");
+        Files.writeString(tempDir.resolve("second.properties"), "key=old\n");
+        List<Map<String, Object>> replacements = Arrays.asList(
+            createReplacement("first.properties", createChange("key", "new")),
+            createReplacement("second.properties", createChange("key", "new"))
+        );
+
+        engine.setTargetFilter(tempDir.resolve("./second.properties"));
+        InjectionResult result = engine.run(replacements);
+
+        assertEquals(1, result.getProcessedFiles());
+        assertEquals("second.properties", result.getFiles().get(0).getFile());
+        assertEquals("key=old\n", Files.readString(tempDir.resolve("first.properties")));
+    }
+
+    @Test
+    void testRun_dryRunReportsDiffWithoutWriting() throws Exception {
+        Path file = tempDir.resolve("config.properties");
+        Files.writeString(file, "host=old\nport=1\n");
+        Map<String, Object> replacement = createReplacement("config.properties", createChange("host", "new"));
+        ((List<Map<String, Object>>) replacement.get("changes")).add(createChange("port", "1"));
+        ((List<Map<String, Object>>) replacement.get("changes")).add(createChange("user", "${MISSING_VAR_12345}"));
+
+        engine.setDryRun(true);
+        InjectionResult result = engine.run(List.of(replacement));
+
+        assertEquals("host=old\nport=1\n", Files.readString(file));
+        assertEquals(1, result.getModifiedFiles());
+        assertEquals(List.of("MISSING_VAR_12345"), result.getMissingVariables());
+
+        FileDiff diff = result.getFiles().get(0).getDiff();
+        assertEquals(2, diff.getChanges().size());
+        assertEquals("host", diff.getChanges().get(0).getPath());
+        assertEquals("old", diff.getChanges().get(0).getOldValue());
+        assertEquals("new", diff.getChanges().get(0).getNewValue());
+        assertNull(diff.getChanges().get(1).getOldValue());
+
+        List<String> plan = new InjectionReport(result, 0).toPlanLines();
+        assertEquals("Plan: 1 of 1 files would change", plan.get(0));
+        assertTrue(plan.contains("  host: \"old\" -> \"new\""));
+        assertTrue(plan.contains("  user: <unset> -> <hidden>"));
+        assertTrue(new InjectionReport(result, 0).toPlanLines(true).contains("  user: <unset> -> \"\""));
+    }
+
+    @Test
+    void testRun_resolvesEachVariableOnceBeforeProcessing() throws Exception {
+        List<Set<String>> lookups = new ArrayList<>();
+        VariableResolver resolver = new VariableResolver() {
+            @Override
+            public String getVariable(String varName) {
+                throw new AssertionError("Unexpected single lookup of " + varName);
+            }
+
+            @Override
+            public Map<String, String> getVariables(Set<String> varNames) {
+                lookups.add(varNames);
+                return Map.of("DB_HOST", "db.example.com");
+            }
+        };
+        for (int i = 0; i < 4; i++) {
+            Files.writeString(tempDir.resolve("file" + i + ".properties"), "");
+        }
+        List<Map<String, Object>> replacements = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            replacements.add(createReplacement("file" + i + ".properties", createChange("url", "jdbc://${DB_HOST}/${DB_NAME:app}")));
+        }
+
+        engine = new InjectionEngine(tempDir, resolver, true);
+        engine.setParallelism(2);
+        engine.run(replacements);
+
+        assertEquals(List.of(Set.of("DB_HOST", "DB_NAME")), lookups);
+        assertTrue(Files.readString(tempDir.resolve("file3.properties")).contains("url=jdbc\\://db.example.com/app"));
+    }
+
+    @Test
+    void testRun_reportsMissingVariablesBeforeTouchingFiles() throws Exception {
+        Path file = tempDir.resolve("first.properties");
+        Files.writeString(file, "key=old\n");
+        List<Map<String, Object>> replacements = Arrays.asList(
+            createReplacement("first.properties", createChange("key", "new")),
+            createReplacement("absent.properties", createChange("key", "${MISSING_VAR_12345}"))
+        );
+
+        MissingRequiredVariableException exception = assertThrows(MissingRequiredVariableException.class, () -> engine.run(replacements));
+
+        assertEquals(List.of("MISSING_VAR_12345"), exception.getMissingVariables());
+        assertEquals("key=old\n", Files.readString(file));
+    }
+
+    @Test
+    void testRun_incrementalOnlyProcessesFilesDependingOnChangedVariables() throws Exception {
+        Map<String, String> values = new HashMap<>(Map.of("DB_PASSWORD", "first", "DB_HOST", "db"));
+        VariableResolver resolver = values::get;
+        List<Map<String, Object>> replacements = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Files.writeString(tempDir.resolve("file" + i + ".properties"), "");
+            String value = i == 2 ? "${DB_PASSWORD}" : "${DB_HOST}";
+            replacements.add(createReplacement("file" + i + ".properties", createChange("key", value)));
+        }
+        Path indexPath = tempDir.resolve("dependencies.properties");
+
+        engine = new InjectionEngine(tempDir, resolver, true);
+        engine.setDependencyIndexPath(indexPath);
+        engine.setIncremental(true);
+        assertEquals(4, engine.run(replacements).getProcessedFiles());
+        assertTrue(Files.exists(indexPath));
+
+        assertEquals(0, engine.run(replacements).getProcessedFiles());
+
+        values.put("DB_PASSWORD", "second");
+        InjectionResult result = engine.run(replacements);
+        assertEquals(1, result.getProcessedFiles());
+        assertEquals("file2.properties", result.getFiles().get(0).getFile());
+        assertTrue(Files.readString(tempDir.resolve("file2.properties")).contains("key=second"));
+
+        // A changed plan cannot be compared with the saved index
+        replacements.add(createReplacement("file0.properties", createChange("other", "constant")));
+        assertEquals(4, engine.run(replacements).getProcessedFiles());
+    }
+
+    @Test
+    void testRun_conditionsFilterChangesBeforeOpeningFiles() throws Exception {
+        Map<String, String> values = Map.of("ENVIRONMENT", "staging");
+        List<Set<String>> lookups = new ArrayList<>();
+        VariableResolver resolver = new VariableResolver() {
+            @Override
+            public String getVariable(String varName) {
+                return values.get(varName);
+            }
+
+            @Override
+            public Map<String, String> getVariables(Set<String> varNames) {
+                lookups.add(varNames);
+                return VariableResolver.super.getVariables(varNames);
+            }
+        };
+        Files.writeString(tempDir.resolve("config.properties"), "");
+
+        Map<String, Object> debug = createChange("debug", "true");
+        debug.put("when", "${ENVIRONMENT} == 'staging'");
+        Map<String, Object> apiKey = createChange("api.key", "${API_KEY}");
+        apiKey.put("when", "${ENVIRONMENT} == 'production'");
+        Map<String, Object> replacement = createReplacement("config.properties", debug);
+        ((List<Map<String, Object>>) replacement.get("changes")).add(apiKey);
+        // Would fail with FileNotFoundException if opened
+        Map<String, Object> productionOnly = createReplacement("absent.properties", createChange("key", "value"));
+        productionOnly.put("when", "${ENVIRONMENT} == production");
+
+        engine = new InjectionEngine(tempDir, resolver, true);
+        InjectionResult result = engine.run(List.of(replacement, productionOnly));
+
+        assertEquals(List.of(Set.of("ENVIRONMENT", "API_KEY")), lookups);
+        assertEquals(1, result.getProcessedFiles());
+        String content = Files.readString(tempDir.resolve("config.properties"));
+        assertTrue(content.contains("debug=true"));
+        assertFalse(content.contains("api.key"));
+    }
+
+    @Test
+    void testRun_matrixInjectsEveryDiscoveredWorldInOneBatch() throws Exception {
+        Map<String, String> values = Map.of("VIEW_DISTANCE_WORLD", "12", "VIEW_DISTANCE_WORLD_NETHER", "6");
+        List<Set<String>> lookups = new ArrayList<>();
+        VariableResolver resolver = new VariableResolver() {
+            @Override
+            public String getVariable(String varName) {
+                return values.get(varName);
+            }
+
+            @Override
+            public Map<String, String> getVariables(Set<String> varNames) {
+                lookups.add(varNames);
+                return VariableResolver.super.getVariables(varNames);
+            }
+        };
+        Map<String, Object> replacement = createReplacement("{world}/world.properties", createChange("view-distance", "${VIEW_DISTANCE_{WORLD}}"));
+        replacement.put("matrix", Map.of("world", Map.of("directories", "world*")));
+        List<Map<String, Object>> replacements = List.of(replacement);
+        for (String world : List.of("world", "world_nether")) {
+            Files.createDirectories(tempDir.resolve(world));
+            Files.writeString(tempDir.resolve(world).resolve("world.properties"), "");
+        }
+
+        engine = new InjectionEngine(tempDir, resolver, true);
+        engine.setParallelism(4);
+        List<Path> batch = new ArrayList<>();
+        engine.setListener(new InjectionListener() {
+            @Override
+            public void onTargetsResolved(List<Path> files) {
+                batch.addAll(files);
+            }
+        });
+        assertEquals(2, engine.run(replacements).getProcessedFiles());
+
+        assertEquals(List.of(Set.of("VIEW_DISTANCE_WORLD", "VIEW_DISTANCE_WORLD_NETHER")), lookups);
+        assertEquals(2, batch.size());
+        assertTrue(Files.readString(tempDir.resolve("world/world.properties")).contains("view-distance=12"));
+        assertTrue(Files.readString(tempDir.resolve("world_nether/world.properties")).contains("view-distance=6"));
+
+        // A new world is picked up without any configuration change
+        Files.createDirectories(tempDir.resolve("world_the_end"));
+        Files.writeString(tempDir.resolve("world_the_end/world.properties"), "");
+        assertThrows(MissingRequiredVariableException.class, () -> engine.run(replacements));
+    }
+
+    @Test
+    void testRun_reportsRequiredVariablesOfDefaultsAndValues() throws Exception {
+        Path file = tempDir.resolve("config.properties");
+        Files.writeString(file, "k=old\n");
+        VariableResolver resolver = Map.of("URL", "http://${NOPE_HOST}:${PORT:80}")::get;
+        engine = new InjectionEngine(tempDir, resolver, true);
+
+        MissingRequiredVariableException exception = assertThrows(MissingRequiredVariableException.class,
+            () -> engine.run(List.of(createReplacement("config.properties", createChange("k", "${NOPE_A:${NOPE_B}}")))));
+        assertEquals(List.of("NOPE_B"), exception.getMissingVariables());
+
+        exception = assertThrows(MissingRequiredVariableException.class,
+            () -> engine.run(List.of(createReplacement("config.properties", createChange("k", "${URL}")))));
+        assertEquals(List.of("NOPE_HOST"), exception.getMissingVariables());
+        assertEquals("k=old\n", Files.readString(file));
+
+        // A default used only when the outer variable is unset is not required otherwise
+        engine = new InjectionEngine(tempDir, Map.of("NOPE_A", "set")::get, true);
+        engine.run(List.of(createReplacement("config.properties", createChange("k", "${NOPE_A:${NOPE_B}}"))));
+        assertTrue(Files.readString(file).contains("k=set"));
+    }
+
+    @Test
+    void testRun_rejectsMalformedCondition() {
+        Map<String, Object> change = createChange("key", "value");
+        change.put("when", "${ENVIRONMENT} ==");
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+            () -> engine.run(List.of(createReplacement("config.properties", change))));
+        assertTrue(exception.getMessage().contains("replacements[0].changes[0].when"));
+    }
+
+    private Map<String, Object> createReplacement(String file, Map<String, Object> change) {
+        Map<String, Object> replacement = new HashMap<>();
+        replacement.put("file", file);
+        replacement.put("changes", new ArrayList<>(List.of(change)));
+        return replacement;
+    }
+
+    private Map<String, Object> createChange(String path, String value) {
+        Map<String, Object> change = new HashMap<>();
+        change.put("path", path);
+        change.put("value", value);
+        return change;
+    }
+}
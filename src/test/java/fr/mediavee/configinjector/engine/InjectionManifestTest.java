@@ -0,0 +1,116 @@
+package fr.mediavee.configinjector.engine;
+
+import fr.mediavee.configinjector.resolver.VariableResolver;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InjectionManifestTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path manifestFile;
+    private Path targetFile;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        manifestFile = tempDir.resolve("state.properties");
+        targetFile = tempDir.resolve("config.properties");
+        Files.writeString(targetFile, "key=value\n");
+    }
+
+    @Test
+    void testRecordAndReload() throws Exception {
+        InjectionManifest manifest = InjectionManifest.load(manifestFile);
+        assertFalse(manifest.isUpToDate(targetFile, "hash"));
+
+        manifest.record(targetFile, "hash");
+        manifest.save();
+
+        InjectionManifest reloaded = InjectionManifest.load(manifestFile);
+        assertTrue(reloaded.isUpToDate(targetFile, "hash"));
+        assertFalse(reloaded.isUpToDate(targetFile, "other-hash"));
+    }
+
+    @Test
+    void testModifiedContentIsDetected() throws Exception {
+        InjectionManifest manifest = InjectionManifest.load(manifestFile);
+        manifest.record(targetFile, "hash");
+
+        Files.writeString(targetFile, "key=other\n");
+        Files.setLastModifiedTime(targetFile, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+
+        assertFalse(manifest.isUpToDate(targetFile, "hash"));
+    }
+
+    @Test
+    void testTouchedButIdenticalFileIsUpToDate() throws Exception {
+        InjectionManifest manifest = InjectionManifest.load(manifestFile);
+        manifest.record(targetFile, "hash");
+
+        Files.setLastModifiedTime(targetFile, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+
+        assertTrue(manifest.isUpToDate(targetFile, "hash"));
+    }
+
+    @Test
+    void testConcurrentSavesKeepEachOthersEntries() throws Exception {
+        Path otherFile = tempDir.resolve("other.properties");
+        Files.writeString(otherFile, "key=value\n");
+        InjectionManifest first = InjectionManifest.load(manifestFile);
+        InjectionManifest second = InjectionManifest.load(manifestFile);
+
+        first.record(targetFile, "hash");
+        second.record(otherFile, "other-hash");
+        first.save();
+        second.save();
+
+        InjectionManifest reloaded = InjectionManifest.load(manifestFile);
+        assertTrue(reloaded.isUpToDate(targetFile, "hash"));
+        assertTrue(reloaded.isUpToDate(otherFile, "other-hash"));
+    }
+
+    @Test
+    void testHashChangesDependsOnValues() {
+        List<String[]> first = List.<String[]>of(new String[] { "database.host", "localhost" });
+        List<String[]> second = List.<String[]>of(new String[] { "database.host", "remotehost" });
+
+        assertEquals(InjectionManifest.hashChanges(first), InjectionManifest.hashChanges(first));
+        assertNotEquals(InjectionManifest.hashChanges(first), InjectionManifest.hashChanges(second));
+    }
+
+    @Test
+    void testEngineReprocessesFileWhenVariableChanges() throws Exception {
+        Map<String, String> variables = new HashMap<>();
+        variables.put("DB_HOST", "first");
+        VariableResolver resolver = variables::get;
+
+        Map<String, Object> change = new HashMap<>();
+        change.put("path", "key");
+        change.put("value", "${DB_HOST}");
+        Map<String, Object> replacement = new HashMap<>();
+        replacement.put("file", "config.properties");
+        replacement.put("changes", List.of(change));
+
+        InjectionEngine engine = new InjectionEngine(tempDir, resolver, true);
+        engine.setManifest(InjectionManifest.load(manifestFile));
+        assertEquals(1, engine.run(List.of(replacement)).getModifiedFiles());
+        assertTrue(Files.exists(manifestFile));
+
+        engine.setManifest(InjectionManifest.load(manifestFile));
+        assertEquals(0, engine.run(List.of(replacement)).getModifiedFiles());
+
+        variables.put("DB_HOST", "second");
+        engine.setManifest(InjectionManifest.load(manifestFile));
+        assertEquals(1, engine.run(List.of(replacement)).getModifiedFiles());
+        assertTrue(Files.readString(targetFile).contains("key=second"));
+    }
+}
@@ -0,0 +1,75 @@
+package fr.mediavee.configinjector.engine;
+
+import fr.mediavee.configinjector.processor.FileMetrics;
+import fr.mediavee.configinjector.processor.FileMetrics.Phase;
+import fr.mediavee.configinjector.resolver.impl.SystemVariableResolver;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InjectionReportTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testEngineRecordsPhaseMetrics() throws Exception {
+        Files.writeString(tempDir.resolve("config.properties"), "key=old\n");
+
+        InjectionEngine engine = new InjectionEngine(tempDir, new SystemVariableResolver(), true);
+        InjectionResult result = engine.run(List.of(createReplacement("config.properties", "key", "new")));
+
+        assertEquals(1, result.getFiles().size());
+        FileReport file = result.getFiles().get(0);
+        assertEquals("Properties", file.getFormat());
+        assertTrue(file.isModified());
+        assertFalse(file.isSkipped());
+
+        FileMetrics metrics = file.getMetrics();
+        assertEquals(8, metrics.getBytesIn());
+        assertEquals(Files.size(tempDir.resolve("config.properties")), metrics.getBytesOut());
+        assertTrue(metrics.getNanos(Phase.WRITE) > 0);
+    }
+
+    @Test
+    void testJsonReport() throws Exception {
+        FileMetrics metrics = new FileMetrics();
+        metrics.add(Phase.PARSE, 2_000_000);
+        metrics.addBytesIn(42);
+        InjectionResult result = new InjectionResult(List.of(
+            new FileReport("plugins/My \"Plugin\"/config.yml", "YAML", true, false, metrics),
+            new FileReport("plugins/Other/config.json", null, false, true, new FileMetrics())
+        ), 5_000_000);
+
+        InjectionReport report = new InjectionReport(result, 1_000_000);
+        Path reportFile = tempDir.resolve("data").resolve("report.json");
+        report.writeJson(reportFile);
+
+        String json = Files.readString(reportFile);
+        assertTrue(json.contains("\"processedFiles\": 2"));
+        assertTrue(json.contains("\"modifiedFiles\": 1"));
+        assertTrue(json.contains("\"skippedFiles\": 1"));
+        assertTrue(json.contains("\"file\": \"plugins/My \\\"Plugin\\\"/config.yml\""));
+        assertTrue(json.contains("\"parseMs\": 2.000"));
+        assertTrue(json.contains("\"format\": null"));
+
+        String summary = report.toSummary();
+        assertTrue(summary.startsWith("Processed 2 files, modified 1 files, skipped 1 unchanged in 5.0 ms"));
+        assertTrue(summary.contains("42 B in"));
+    }
+
+    private Map<String, Object> createReplacement(String file, String path, String value) {
+        Map<String, Object> change = new HashMap<>();
+        change.put("path", path);
+        change.put("value", value);
+        Map<String, Object> replacement = new HashMap<>();
+        replacement.put("file", file);
+        replacement.put("changes", List.of(change));
+        return replacement;
+    }
+}
@@ -0,0 +1,107 @@
+package fr.mediavee.configinjector.engine;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SizeAwareSchedulerTest {
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testRun_neverExceedsBudgetAndKeepsTaskOrder() throws IOException {
+        AtomicLong inFlight = new AtomicLong();
+        AtomicLong peak = new AtomicLong();
+        long[] estimates = { 40, 10, 70, 20, 30, 10, 60, 50 };
+
+        List<SizeAwareScheduler.Task<Long>> tasks = new ArrayList<>();
+        for (long estimate : estimates) {
+            tasks.add(new SizeAwareScheduler.Task<>(estimate, () -> {
+                peak.accumulateAndGet(inFlight.addAndGet(estimate), Math::max);
+                Thread.sleep(10);
+                inFlight.addAndGet(-estimate);
+                return estimate;
+            }));
+        }
+
+        List<Long> results = new SizeAwareScheduler(executor, 4, 100).run(tasks);
+
+        assertEquals(Arrays.asList(40L, 10L, 70L, 20L, 30L, 10L, 60L, 50L), results);
+        assertTrue(peak.get() <= 100, "peak " + peak.get());
+    }
+
+    @Test
+    void testRun_startsLargestFirst() throws IOException {
+        List<Long> started = Collections.synchronizedList(new ArrayList<>());
+        List<SizeAwareScheduler.Task<Void>> tasks = new ArrayList<>();
+        for (long estimate : new long[] { 2, 5, 1, 9, 5 }) {
+            tasks.add(new SizeAwareScheduler.Task<>(estimate, () -> {
+                started.add(estimate);
+                return null;
+            }));
+        }
+
+        new SizeAwareScheduler(executor, 1, Long.MAX_VALUE).run(tasks);
+
+        assertEquals(Arrays.asList(9L, 5L, 5L, 2L, 1L), started);
+    }
+
+    @Test
+    void testRun_oversizedTaskRunsAlone() throws IOException {
+        AtomicLong running = new AtomicLong();
+        AtomicLong concurrentWithLarge = new AtomicLong();
+
+        List<SizeAwareScheduler.Task<Void>> tasks = new ArrayList<>();
+        tasks.add(new SizeAwareScheduler.Task<>(10, () -> {
+            running.incrementAndGet();
+            Thread.sleep(5);
+            running.decrementAndGet();
+            return null;
+        }));
+        tasks.add(new SizeAwareScheduler.Task<>(500, () -> {
+            running.incrementAndGet();
+            Thread.sleep(20);
+            concurrentWithLarge.set(running.get() - 1);
+            running.decrementAndGet();
+            return null;
+        }));
+        tasks.add(new SizeAwareScheduler.Task<>(10, () -> null));
+
+        new SizeAwareScheduler(executor, 4, 100).run(tasks);
+
+        assertEquals(0, concurrentWithLarge.get());
+    }
+
+    @Test
+    void testRun_throwsFirstFailureInTaskOrder() {
+        List<SizeAwareScheduler.Task<Void>> tasks = new ArrayList<>();
+        tasks.add(new SizeAwareScheduler.Task<>(1, () -> null));
+        tasks.add(new SizeAwareScheduler.Task<>(1, () -> {
+            throw new IOException("first");
+        }));
+        tasks.add(new SizeAwareScheduler.Task<>(1, () -> {
+            throw new IllegalStateException("second");
+        }));
+
+        IOException exception = assertThrows(IOException.class, () -> new SizeAwareScheduler(executor, 1, 100).run(tasks));
+        assertEquals("first", exception.getMessage());
+    }
+}
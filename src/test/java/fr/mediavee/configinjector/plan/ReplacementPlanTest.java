@@ -0,0 +1,200 @@
+package fr.mediavee.configinjector.plan;
+
+import fr.mediavee.configinjector.resolver.VariableNamespaces;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplacementPlanTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testCompileValidEntries() {
+        List<Map<String, Object>> replacements = List.of(
+            createReplacement("plugins/Test/config.yml", createChange("database.host", "${DB_HOST:localhost}")),
+            createReplacement("plugins/*/config.yml", createChange("debug", "false"))
+        );
+
+        ReplacementPlan plan = ReplacementPlan.compile(replacements, tempDir);
+
+        assertEquals(2, plan.getReplacements().size());
+
+        PlannedReplacement literal = plan.getReplacements().get(0);
+        assertFalse(literal.isGlob());
+        assertEquals(tempDir.resolve("plugins/Test/config.yml").toAbsolutePath().normalize(), literal.getTarget());
+
+        PlannedChange change = literal.getChanges().get(0);
+        assertEquals("database.host", change.getPath());
+        assertEquals(List.of("database", "host"), change.getKeys());
+        assertEquals(Set.of("DB_HOST"), change.getValue().getVariableNames());
+
+        PlannedReplacement glob = plan.getReplacements().get(1);
+        assertTrue(glob.isGlob());
+        assertNull(glob.getTarget());
+        assertTrue(glob.getChanges().get(0).getValue().isConstant());
+    }
+
+    @Test
+    void testScalarValuesAreAccepted() {
+        Map<String, Object> change = new HashMap<>();
+        change.put("path", "server.port");
+        change.put("value", 25565);
+
+        ReplacementPlan plan = ReplacementPlan.compile(List.of(createReplacement("config.yml", change)), tempDir);
+
+        assertEquals("25565", plan.getReplacements().get(0).getChanges().get(0).getValue().getSource());
+    }
+
+    @Test
+    void testMalformedEntriesReportTheirLocation() {
+        assertInvalid("replacements", "not a list");
+
+        Map<String, Object> noFile = new HashMap<>();
+        noFile.put("changes", List.of());
+        assertInvalid("replacements[0].file", List.of(noFile));
+
+        Map<String, Object> numericFile = new HashMap<>();
+        numericFile.put("file", 42);
+        numericFile.put("changes", List.of());
+        assertInvalid("replacements[0].file", List.of(numericFile));
+
+        Map<String, Object> noChanges = new HashMap<>();
+        noChanges.put("file", "config.yml");
+        assertInvalid("replacements[0].changes", List.of(noChanges));
+
+        assertInvalid("replacements[0].file", List.of(createReplacement("notes.txt", createChange("a", "b"))));
+
+        Map<String, Object> noPath = new HashMap<>();
+        noPath.put("value", "b");
+        assertInvalid("replacements[1].changes[1].path", List.of(
+            createReplacement("a.yml", createChange("a", "b")),
+            createReplacement("b.yml", createChange("a", "b"), noPath)
+        ));
+
+        assertInvalid("replacements[0].changes[0].path", List.of(createReplacement("a.yml", createChange("a..b", "c"))));
+
+        Map<String, Object> listValue = new HashMap<>();
+        listValue.put("path", "a");
+        listValue.put("value", List.of("b"));
+        assertInvalid("replacements[0].changes[0].value", List.of(createReplacement("a.yml", listValue)));
+    }
+
+    @Test
+    void testLiteralMatrixIsExpandedOnCompile() throws Exception {
+        Map<String, Object> replacement = createReplacement("{world}/paper-world.yml",
+            createChange("chunks.view-distance", "${VIEW_DISTANCE_{WORLD}:10}"));
+        replacement.put("matrix", Map.of("world", List.of("world", "world_nether")));
+
+        ReplacementPlan plan = ReplacementPlan.compile(List.of(replacement), tempDir);
+
+        assertEquals(2, plan.getReplacements().size());
+        assertSame(plan, plan.expand(tempDir));
+        assertEquals(tempDir.resolve("world_nether/paper-world.yml").toAbsolutePath().normalize(),
+            plan.getReplacements().get(1).getTarget());
+        assertEquals(Set.of("VIEW_DISTANCE_WORLD", "VIEW_DISTANCE_WORLD_NETHER"), plan.getVariableNames());
+    }
+
+    @Test
+    void testDiscoveredMatrixIsExpandedOnDisk() throws Exception {
+        Map<String, Object> replacement = createReplacement("{world}/paper-world.yml",
+            createChange("chunks.view-distance", "${VIEW_DISTANCE_{WORLD}}"));
+        replacement.put("matrix", Map.of("world", Map.of("directories", "*")));
+        ReplacementPlan plan = ReplacementPlan.compile(List.of(replacement), tempDir);
+        assertTrue(plan.getVariableNames().isEmpty());
+
+        for (String world : List.of("world", "world_the_end", "plugins", ".cache")) {
+            Files.createDirectories(tempDir.resolve(world));
+        }
+        Files.writeString(tempDir.resolve("world/paper-world.yml"), "");
+        Files.writeString(tempDir.resolve("world_the_end/paper-world.yml"), "");
+        Files.writeString(tempDir.resolve(".cache/paper-world.yml"), "");
+
+        // Directories without the file, such as plugins, are left out
+        ReplacementPlan expanded = plan.expand(tempDir);
+        assertEquals(2, expanded.getReplacements().size());
+        assertEquals("world_the_end/paper-world.yml", expanded.getReplacements().get(1).getFile());
+        assertEquals(Set.of("VIEW_DISTANCE_WORLD", "VIEW_DISTANCE_WORLD_THE_END"), expanded.getVariableNames());
+    }
+
+    @Test
+    void testMalformedMatrixReportsItsLocation() {
+        Map<String, Object> empty = createReplacement("{world}/paper-world.yml", createChange("a", "b"));
+        empty.put("matrix", Map.of("world", List.of()));
+        assertInvalid("replacements[0].matrix.world", List.of(empty));
+
+        Map<String, Object> nestedGlob = createReplacement("{world}/paper-world.yml", createChange("a", "b"));
+        nestedGlob.put("matrix", Map.of("world", Map.of("directories", "*/worlds/*")));
+        assertInvalid("replacements[0].matrix.world.directories", List.of(nestedGlob));
+
+        Map<String, Object> brokenChange = createReplacement("{world}/paper-world.yml", createChange("a..b", "c"));
+        brokenChange.put("matrix", Map.of("world", Map.of("directories", "*")));
+        assertInvalid("replacements[0].changes[0].path", List.of(brokenChange));
+    }
+
+    @Test
+    void testCacheCompilesOncePerConfiguration() {
+        PlanCache cache = new PlanCache();
+        AtomicInteger compilations = new AtomicInteger();
+        List<Map<String, Object>> replacements = List.of(createReplacement("config.yml", createChange("a", "b")));
+
+        byte[] first = "replacements: []".getBytes(StandardCharsets.UTF_8);
+        byte[] second = "replacements: [{}]".getBytes(StandardCharsets.UTF_8);
+
+        ReplacementPlan plan = cache.get(first, () -> {
+            compilations.incrementAndGet();
+            return ReplacementPlan.compile(replacements, tempDir);
+        });
+        assertSame(plan, cache.get(first.clone(), () -> {
+            compilations.incrementAndGet();
+            return ReplacementPlan.compile(replacements, tempDir);
+        }));
+        assertEquals(1, compilations.get());
+
+        assertNotSame(plan, cache.get(second, () -> {
+            compilations.incrementAndGet();
+            return ReplacementPlan.compile(replacements, tempDir);
+        }));
+        assertEquals(2, compilations.get());
+
+        VariableNamespaces.register("plan-cache-test", name -> null);
+        try {
+            cache.get(second, () -> {
+                compilations.incrementAndGet();
+                return ReplacementPlan.compile(replacements, tempDir);
+            });
+        } finally {
+            VariableNamespaces.unregister("plan-cache-test");
+        }
+        assertEquals(3, compilations.get());
+    }
+
+    private void assertInvalid(String location, Object replacements) {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+            () -> ReplacementPlan.compile(replacements, tempDir));
+        assertTrue(e.getMessage().contains("at " + location + ":"), e.getMessage());
+    }
+
+    @SafeVarargs
+    private Map<String, Object> createReplacement(String file, Map<String, Object>... changes) {
+        Map<String, Object> replacement = new HashMap<>();
+        replacement.put("file", file);
+        replacement.put("changes", Arrays.asList(changes));
+        return replacement;
+    }
+
+    private Map<String, Object> createChange(String path, String value) {
+        Map<String, Object> change = new HashMap<>();
+        change.put("path", path);
+        change.put("value", value);
+        return change;
+    }
+}
@@ -10,6 +10,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -63,6 +64,24 @@ class YamlFileProcessorTest {
         assertEquals("5432", updatedData.get("port"));
     }
 
+    @Test
+    void testProcessFile_identicalOutputIsNotWritten() throws Exception {
+        Path yamlFile = tempDir.resolve("test.yml");
+        Files.writeString(yamlFile, "host: localhost\n");
+        FileTime lastModified = FileTime.fromMillis(System.currentTimeMillis() - 60000);
+        Files.setLastModifiedTime(yamlFile, lastModified);
+
+        // The first change differs, the second one restores the original document
+        List<Map<String, Object>> changes = Arrays.asList(
+            createChange("host", "newhost"),
+            createChange("host", "localhost")
+        );
+
+        assertFalse(processor.processFile(yamlFile, changes));
+        assertEquals("host: localhost\n", Files.readString(yamlFile));
+        assertEquals(lastModified, Files.getLastModifiedTime(yamlFile));
+    }
+
     @Test
     void testProcessFile_nestedValue() throws Exception {
         Path yamlFile = tempDir.resolve("test.yml");
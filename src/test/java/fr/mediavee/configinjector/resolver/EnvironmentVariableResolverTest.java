@@ -1,7 +1,12 @@
 package fr.mediavee.configinjector.resolver;
 
+import fr.mediavee.configinjector.exception.VariableExpansionException;
+import fr.mediavee.configinjector.resolver.impl.CachingVariableResolver;
 import fr.mediavee.configinjector.resolver.impl.CompositeVariableResolver;
 import fr.mediavee.configinjector.resolver.impl.EnvironmentFileResolver;
+import fr.mediavee.configinjector.resolver.impl.ExpandingVariableResolver;
+import fr.mediavee.configinjector.resolver.impl.MapVariableResolver;
+import fr.mediavee.configinjector.resolver.impl.NamespacedVariableResolver;
 import fr.mediavee.configinjector.resolver.impl.SystemVariableResolver;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -10,7 +15,12 @@ import org.junit.jupiter.api.io.TempDir;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -137,4 +147,155 @@ class EnvironmentVariableResolverTest {
         // Non-existent variables should return null
         assertNull(resolver.getVariable("NON_EXISTENT_VAR_12345"));
     }
-}
\ No newline at end of file
+    
+    @Test
+    void testCompositeResolverBulkLookupOnlyAsksForRemainingNames() throws IOException {
+        Files.writeString(envFile, "PATH=/from/env/file\nDB_HOST=db.example.com\n");
+        List<Set<String>> requested = new ArrayList<>();
+        EnvironmentFileResolver envResolver = new EnvironmentFileResolver(envFile);
+        VariableResolver recording = new VariableResolver() {
+            @Override
+            public String getVariable(String varName) {
+                return envResolver.getVariable(varName);
+            }
+            
+            @Override
+            public Map<String, String> getVariables(Set<String> varNames) {
+                requested.add(varNames);
+                return envResolver.getVariables(varNames);
+            }
+        };
+        
+        CompositeVariableResolver resolver = new CompositeVariableResolver(new SystemVariableResolver(), recording);
+        Map<String, String> values = resolver.getVariables(Set.of("PATH", "DB_HOST", "NON_EXISTENT_VAR_12345"));
+        
+        assertEquals(System.getenv("PATH"), values.get("PATH"));
+        assertEquals("db.example.com", values.get("DB_HOST"));
+        assertFalse(values.containsKey("NON_EXISTENT_VAR_12345"));
+        assertEquals(List.of(Set.of("DB_HOST", "NON_EXISTENT_VAR_12345")), requested);
+    }
+    
+    @Test
+    void testCachingResolverLooksUpEachNameOnce() {
+        List<String> lookups = Collections.synchronizedList(new ArrayList<>());
+        VariableResolver counting = varName -> {
+            lookups.add(varName);
+            return varName.equals("KNOWN") ? "value" : null;
+        };
+        
+        CachingVariableResolver resolver = new CachingVariableResolver(counting);
+        assertEquals(Map.of("KNOWN", "value"), resolver.getVariables(Set.of("KNOWN", "UNKNOWN")));
+        assertEquals(Map.of("KNOWN", "value"), resolver.getVariables(Set.of("KNOWN", "UNKNOWN")));
+        assertEquals("value", resolver.getVariable("KNOWN"));
+        assertNull(resolver.getVariable("UNKNOWN"));
+        
+        assertEquals(2, lookups.size());
+        assertTrue(lookups.containsAll(List.of("KNOWN", "UNKNOWN")));
+    }
+
+    @Test
+    void testExpandingResolverExpandsNestedValuesOnce() {
+        Map<String, String> values = Map.of(
+            "DB_URL", "jdbc:mysql://${DB_HOST:localhost}:${DB_PORT:3306}/${DB_NAME}",
+            "DB_HOST", "${REGION}.db.internal",
+            "REGION", "eu",
+            "DB_NAME", "${MISSING:${REGION}_main}"
+        );
+        List<String> lookups = Collections.synchronizedList(new ArrayList<>());
+        ExpandingVariableResolver resolver = new ExpandingVariableResolver(name -> {
+            lookups.add(name);
+            return values.get(name);
+        });
+
+        assertEquals("jdbc:mysql://eu.db.internal:3306/eu_main", resolver.getVariable("DB_URL"));
+        assertEquals("eu.db.internal", resolver.getVariable("DB_HOST"));
+        assertNull(resolver.getVariable("MISSING"));
+        // Each variable reaches the delegate once, except unset ones which are not remembered
+        assertEquals(1, Collections.frequency(lookups, "REGION"));
+        assertEquals(1, Collections.frequency(lookups, "DB_HOST"));
+    }
+
+    @Test
+    void testExpandingResolverReportsCycles() {
+        Map<String, String> values = Map.of("URL", "http://${A}", "A", "${B:x}", "B", "${A}");
+        ExpandingVariableResolver resolver = new ExpandingVariableResolver(values::get);
+
+        VariableExpansionException e = assertThrows(VariableExpansionException.class, () -> resolver.getVariable("URL"));
+        assertEquals(List.of("A", "B", "A"), e.getChain());
+        assertTrue(e.getMessage().contains("A \u2192 B \u2192 A"), e.getMessage());
+    }
+
+    @Test
+    void testExpandingResolverLimitsDepth() {
+        Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            values.put("V" + i, "${V" + (i + 1) + "}");
+        }
+        ExpandingVariableResolver resolver = new ExpandingVariableResolver(values::get);
+
+        VariableExpansionException e = assertThrows(VariableExpansionException.class, () -> resolver.getVariable("V0"));
+        assertEquals(ExpandingVariableResolver.MAX_DEPTH + 1, e.getChain().size());
+    }
+
+    @Test
+    void testExpandingLookupFetchesReferencedVariablesPerLevel() {
+        Map<String, String> values = Map.of("URL", "${HOST}:${PORT:80}", "HOST", "${REGION}.example.org", "REGION", "eu");
+        List<Set<String>> lookups = new ArrayList<>();
+        VariableResolver resolver = new VariableResolver() {
+            @Override
+            public String getVariable(String varName) {
+                return values.get(varName);
+            }
+
+            @Override
+            public Map<String, String> getVariables(Set<String> varNames) {
+                lookups.add(varNames);
+                return VariableResolver.super.getVariables(varNames);
+            }
+        };
+
+        Map<String, String> found = ExpandingVariableResolver.lookup(resolver, Set.of("URL"));
+
+        assertEquals(List.of(Set.of("URL"), Set.of("HOST", "PORT"), Set.of("REGION")), lookups);
+        assertEquals("eu.example.org:80", new ExpandingVariableResolver(found::get).getVariable("URL"));
+    }
+
+    @Test
+    void testNamespacedResolverDispatchesByPrefix() {
+        List<String> fallbackLookups = new ArrayList<>();
+        VariableResolver fallback = name -> {
+            fallbackLookups.add(name);
+            return "fallback-" + name;
+        };
+        NamespacedVariableResolver resolver = new NamespacedVariableResolver(fallback, Map.of(
+            VariableNamespaces.ENV, new MapVariableResolver(Map.of("HOST", "from-env")),
+            VariableNamespaces.DOTENV, new MapVariableResolver(Map.of("HOST", "from-dotenv"))
+        ));
+
+        assertEquals("from-env", resolver.getVariable("env:HOST"));
+        assertEquals("from-dotenv", resolver.getVariable("dotenv:HOST"));
+        assertNull(resolver.getVariable("dotenv:MISSING"));
+        assertNull(resolver.getVariable("unknown:HOST"));
+        assertEquals("fallback-HOST", resolver.getVariable("HOST"));
+        // Namespaced misses never fall back to the other sources
+        assertEquals(List.of("HOST"), fallbackLookups);
+
+        assertEquals(Map.of("env:HOST", "from-env", "dotenv:HOST", "from-dotenv", "HOST", "fallback-HOST"),
+            resolver.getVariables(Set.of("env:HOST", "dotenv:HOST", "dotenv:MISSING", "HOST")));
+    }
+
+    @Test
+    void testNamespacedResolverUsesRegisteredPrefixes() {
+        NamespacedVariableResolver resolver = new NamespacedVariableResolver(name -> null, Map.of());
+        VariableNamespaces.register("vault", new MapVariableResolver(Map.of("db/password", "secret")));
+        try {
+            assertTrue(VariableNamespaces.isNamespace("vault"));
+            assertEquals("secret", resolver.getVariable("vault:db/password"));
+        } finally {
+            VariableNamespaces.unregister("vault");
+        }
+        assertNull(resolver.getVariable("vault:db/password"));
+        assertThrows(IllegalArgumentException.class, () -> VariableNamespaces.register("env", name -> null));
+        assertThrows(IllegalArgumentException.class, () -> VariableNamespaces.register("Not Valid", name -> null));
+    }
+}
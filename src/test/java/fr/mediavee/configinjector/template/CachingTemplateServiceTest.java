@@ -0,0 +1,99 @@
+package fr.mediavee.configinjector.template;
+
+import fr.mediavee.configinjector.resolver.VariableNamespaces;
+import fr.mediavee.configinjector.resolver.impl.MapVariableResolver;
+import fr.mediavee.configinjector.resolver.impl.NamespacedVariableResolver;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingTemplateServiceTest {
+
+    @Test
+    void testRendersWithTheCurrentResolver() {
+        CachingTemplateService service = new CachingTemplateService(new MapVariableResolver(Map.of("HOST", "db")), 16);
+
+        assertEquals("jdbc://db:3306", service.render("jdbc://${HOST}:${PORT:3306}"));
+        assertEquals("jdbc://other:1", service.render("jdbc://${HOST}:${PORT:3306}", new MapVariableResolver(Map.of("HOST", "other", "PORT", "1"))));
+
+        service.setResolver(new MapVariableResolver(Map.of("HOST", "replica")));
+        assertEquals("jdbc://replica:3306", service.render("jdbc://${HOST}:${PORT:3306}"));
+        assertEquals(1, service.size());
+    }
+
+    @Test
+    void testValuesAreExpandedOnEveryRender() {
+        Map<String, String> variables = new HashMap<>(Map.of("HOST", "db", "URL", "jdbc://${HOST}"));
+        CachingTemplateService service = new CachingTemplateService(variables::get, 16);
+
+        assertEquals("jdbc://db/app", service.render("${URL}/app"));
+        variables.put("HOST", "replica");
+        assertEquals("jdbc://replica/app", service.render("${URL}/app"));
+    }
+
+    @Test
+    void testCompilesEachTemplateOnce() {
+        CachingTemplateService service = new CachingTemplateService(new MapVariableResolver(Map.of()), 16);
+
+        assertSame(service.compile("${A}"), service.compile("${A}"));
+        assertThrows(IllegalArgumentException.class, () -> service.compile(null));
+    }
+
+    @Test
+    void testRecompilesWhenNamespacesChange() {
+        CachingTemplateService service = new CachingTemplateService(
+            new NamespacedVariableResolver(new MapVariableResolver(Map.of("cache-test", "plain")), Map.of()), 16);
+        assertEquals("plain", service.render("${cache-test:KEY}"));
+
+        VariableNamespaces.register("cache-test", new MapVariableResolver(Map.of("KEY", "namespaced")));
+        try {
+            assertEquals("namespaced", service.render("${cache-test:KEY}"));
+        } finally {
+            VariableNamespaces.unregister("cache-test");
+        }
+        assertEquals("plain", service.render("${cache-test:KEY}"));
+    }
+
+    @Test
+    void testCacheIsBounded() {
+        CachingTemplateService service = new CachingTemplateService(new MapVariableResolver(Map.of()), 8);
+        Template hot = service.compile("${HOT}");
+
+        for (int i = 0; i < 100; i++) {
+            service.compile("${VAR_" + i + "}");
+            // Rendered often, so it keeps being moved back to the current generation
+            assertSame(hot, service.compile("${HOT}"));
+            assertTrue(service.size() <= 8, "size " + service.size());
+        }
+    }
+
+    @Test
+    void testConcurrentRendering() throws Exception {
+        CachingTemplateService service = new CachingTemplateService(new MapVariableResolver(Map.of("HOST", "db")), 8);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        assertEquals("db-" + (i % 20), service.render("${HOST}-${MISSING:" + (i % 20) + "}"));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package fr.mediavee.configinjector.template;
+
+import fr.mediavee.configinjector.resolver.VariableResolver;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConditionTest {
+
+    private final VariableResolver resolver = Map.of(
+        "ENVIRONMENT", "staging",
+        "REGION", "eu",
+        "ZONE", "west",
+        "DEBUG", "false"
+    )::get;
+
+    @Test
+    void testComparisons() {
+        assertTrue(evaluate("${ENVIRONMENT} == 'staging'"));
+        assertFalse(evaluate("${ENVIRONMENT} == \"production\""));
+        assertTrue(evaluate("${ENVIRONMENT} != production"));
+        assertTrue(evaluate("'${REGION}-${ZONE}' == eu-west"));
+        assertTrue(evaluate("${MISSING} == ''"));
+        assertTrue(evaluate("${MISSING:fallback} == fallback"));
+    }
+
+    @Test
+    void testBooleanOperators() {
+        assertTrue(evaluate("${ENVIRONMENT} == staging && ${REGION} == eu"));
+        assertFalse(evaluate("${ENVIRONMENT} == staging && !(${REGION} == eu)"));
+        assertTrue(evaluate("${ENVIRONMENT} == production || ${REGION} == eu"));
+        // && binds tighter than ||
+        assertTrue(evaluate("${REGION} == eu || ${ENVIRONMENT} == production && ${ZONE} == east"));
+        assertFalse(evaluate("(${REGION} == eu || ${ENVIRONMENT} == production) && ${ZONE} == east"));
+    }
+
+    @Test
+    void testTruthiness() {
+        assertTrue(evaluate("${ENVIRONMENT}"));
+        assertFalse(evaluate("${DEBUG}"));
+        assertFalse(evaluate("${MISSING}"));
+        assertTrue(evaluate("!${MISSING}"));
+        assertTrue(evaluate("true"));
+    }
+
+    @Test
+    void testNestedDefaults() {
+        assertTrue(evaluate("${MISSING:${ENVIRONMENT}} == staging"));
+        assertTrue(evaluate("${MISSING:${OTHER:eu}} == ${REGION}"));
+        assertEquals(Set.of("MISSING", "ENVIRONMENT"), Condition.parse("${MISSING:${ENVIRONMENT}} == staging").getVariableNames());
+    }
+
+    @Test
+    void testVariableNames() {
+        Condition condition = Condition.parse("${ENVIRONMENT} == staging && '${REGION}-${ZONE}' != ${ENVIRONMENT}");
+
+        assertEquals(Set.of("ENVIRONMENT", "REGION", "ZONE"), condition.getVariableNames());
+    }
+
+    @Test
+    void testMalformedConditionsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> Condition.parse(""));
+        assertThrows(IllegalArgumentException.class, () -> Condition.parse("${ENVIRONMENT} =="));
+        assertThrows(IllegalArgumentException.class, () -> Condition.parse("(${ENVIRONMENT} == staging"));
+        assertThrows(IllegalArgumentException.class, () -> Condition.parse("'unterminated == x"));
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> Condition.parse("a == b )"));
+        assertTrue(exception.getMessage().contains("position 7"));
+    }
+
+    private boolean evaluate(String source) {
+        return Condition.parse(source).evaluate(resolver);
+    }
+}
@@ -0,0 +1,111 @@
+package fr.mediavee.configinjector.template;
+
+import fr.mediavee.configinjector.resolver.VariableResolver;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TemplateTest {
+
+    // The expression the scanner replaced, kept as the reference for its behavior
+    private static final Pattern REFERENCE_PATTERN = Pattern.compile("\\$\\{([^}:]+)(?::([^}]*))?\\}");
+
+    private final VariableResolver resolver = Map.of("HOST", "db", "PORT", "5432", "EMPTY", "")::get;
+
+    @Test
+    void testValueWithoutPlaceholderIsReturnedAsIs() {
+        String value = "plain value with $ and { braces }";
+        assertSame(value, Template.expand(value, null, resolver));
+        assertTrue(Template.parse(value).isConstant());
+        assertTrue(Template.parse("").isConstant());
+    }
+
+    @Test
+    void testPlaceholders() {
+        assertEquals("db:5432", Template.expand("${HOST}:${PORT}", null, resolver));
+        assertEquals("localhost", Template.expand("${MISSING:localhost}", null, resolver));
+        assertEquals("", Template.expand("${MISSING:}", null, resolver));
+        assertEquals("", Template.expand("${EMPTY:fallback}", null, resolver));
+        assertEquals("a:b", Template.expand("${MISSING:a:b}", null, resolver));
+
+        Template template = Template.parse("jdbc://${HOST}:${PORT:5432}/${NAME:}");
+        assertEquals(Set.of("HOST", "PORT", "NAME"), template.getVariableNames());
+        assertEquals(Set.of("HOST"), template.getRequiredVariableNames());
+        assertEquals("jdbc://db:5432/", template.render(null, resolver));
+    }
+
+    @Test
+    void testNestedDefaults() {
+        assertEquals("jdbc://db:3306", Template.expand("jdbc://${DB_URL:${HOST:localhost}:3306}", null, resolver));
+        assertEquals("localhost:3306", Template.expand("${DB_URL:${MISSING:localhost}:3306}", null, resolver));
+        assertEquals("5432", Template.expand("${A:${B:${PORT}}}", null, resolver));
+        assertEquals("x}", Template.expand("${A:x}}", null, resolver));
+
+        Template template = Template.parse("${DB_URL:${HOST:localhost}:${PORT}}");
+        assertEquals(Set.of("DB_URL", "HOST", "PORT"), template.getVariableNames());
+        assertEquals(Set.of(), template.getRequiredVariableNames());
+        assertEquals("db:5432", template.render(null, resolver));
+
+        String deep = "${A:".repeat(Template.MAX_NESTING + 1) + "x" + "}".repeat(Template.MAX_NESTING + 1);
+        assertThrows(IllegalArgumentException.class, () -> Template.parse(deep));
+        assertThrows(IllegalArgumentException.class, () -> Template.expand(deep, null, resolver));
+        String limit = "${A:".repeat(Template.MAX_NESTING) + "x" + "}".repeat(Template.MAX_NESTING);
+        assertEquals("x", Template.parse(limit).render(null, resolver));
+    }
+
+    @Test
+    void testNamespacedPlaceholders() {
+        VariableResolver namespaced = Map.of("env:HOST", "db", "sys:user.home", "/home/server")::get;
+
+        Template template = Template.parse("${env:HOST}:${env:PORT:5432} ${sys:user.home} ${other:value}");
+        assertEquals(Set.of("env:HOST", "env:PORT", "sys:user.home", "other"), template.getVariableNames());
+        assertEquals("db:5432 /home/server value", template.render(null, namespaced));
+        assertEquals("db:5432 /home/server value", Template.expand(template.getSource(), null, namespaced));
+        // Without a name after the prefix, the prefix is a variable with an empty default
+        assertEquals(Set.of("env"), Template.parse("${env:}").getVariableNames());
+    }
+
+    @Test
+    void testReadsEnvironment() {
+        assertTrue(Template.parse("${HOST}").readsEnvironment());
+        assertTrue(Template.parse("${env:HOST}").readsEnvironment());
+        assertTrue(Template.parse("${sys:user.home:${dotenv:HOME}}").readsEnvironment());
+        assertFalse(Template.parse("${sys:user.home}").readsEnvironment());
+        assertFalse(Template.parse("localhost").readsEnvironment());
+    }
+
+    /**
+     * Defaults containing placeholders are left out, the expression cut them at the first '}'.
+     */
+    @Test
+    void testScannerMatchesTheReferenceExpression() {
+        List<String> values = List.of(
+            "${", "${}", "${:x}", "$${HOST}", "${HOST", "${HOST:", "${HOST:x",
+            "${}${HOST}", "${:}${PORT}", "${${HOST}}", "${HOST}}", "{${HOST}}", "$ {HOST}",
+            "${A B:c d}", "prefix ${HOST} middle ${MISSING:def} suffix", "\u00e9${HOST}\u00e9"
+        );
+        for (String value : values) {
+            assertEquals(reference(value), Template.expand(value, null, resolver), value);
+            assertEquals(reference(value), Template.parse(value).render(null, resolver), value);
+        }
+    }
+
+    private String reference(String value) {
+        Matcher matcher = REFERENCE_PATTERN.matcher(value);
+        StringBuilder result = new StringBuilder();
+        while (matcher.find()) {
+            String resolved = resolver.getVariable(matcher.group(1));
+            if (resolved == null) {
+                resolved = matcher.group(2) != null ? matcher.group(2) : "";
+            }
+            matcher.appendReplacement(result, Matcher.quoteReplacement(resolved));
+        }
+        return matcher.appendTail(result).toString();
+    }
+}
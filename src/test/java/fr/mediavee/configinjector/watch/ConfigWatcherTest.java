@@ -0,0 +1,83 @@
+package fr.mediavee.configinjector.watch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConfigWatcherTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testBurstOfChangesIsDebounced() throws Exception {
+        Path envFile = tempDir.resolve(".env");
+        Path otherFile = tempDir.resolve("other.txt");
+        Files.writeString(envFile, "A=1\n");
+
+        List<Set<Path>> notifications = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(1);
+
+        try (ConfigWatcher watcher = new ConfigWatcher(List.of(envFile), 300, changed -> {
+            notifications.add(changed);
+            latch.countDown();
+        })) {
+            watcher.start();
+
+            for (int i = 2; i < 6; i++) {
+                Files.writeString(envFile, "A=" + i + "\n");
+                Files.writeString(otherFile, "ignored " + i);
+            }
+
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            Thread.sleep(600);
+        }
+
+        assertEquals(1, notifications.size());
+        assertEquals(Set.of(envFile.toAbsolutePath().normalize()), notifications.get(0));
+    }
+
+    @Test
+    void testUnwatchedFilesDoNotDelayNotification() throws Exception {
+        Path envFile = tempDir.resolve(".env");
+        Path logFile = tempDir.resolve("latest.log");
+        CountDownLatch latch = new CountDownLatch(1);
+
+        try (ConfigWatcher watcher = new ConfigWatcher(List.of(envFile), 300, changed -> latch.countDown())) {
+            watcher.start();
+            Files.writeString(envFile, "A=1\n");
+
+            // A busy file next to the watched one keeps changing well past the debounce delay
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(3);
+            boolean notified = false;
+            while (!notified && System.nanoTime() < end) {
+                Files.writeString(logFile, "line " + System.nanoTime() + "\n");
+                notified = latch.await(50, TimeUnit.MILLISECONDS);
+            }
+
+            assertTrue(notified);
+        }
+    }
+
+    @Test
+    void testUnwatchedFilesAreIgnored() throws Exception {
+        Path envFile = tempDir.resolve(".env");
+        CountDownLatch latch = new CountDownLatch(1);
+
+        try (ConfigWatcher watcher = new ConfigWatcher(List.of(envFile), 100, changed -> latch.countDown())) {
+            watcher.start();
+            Files.writeString(tempDir.resolve("other.txt"), "ignored");
+
+            assertFalse(latch.await(1, TimeUnit.SECONDS));
+        }
+    }
+}